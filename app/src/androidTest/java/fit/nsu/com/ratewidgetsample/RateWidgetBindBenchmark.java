@@ -0,0 +1,87 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Recycles widget the way RecyclerView does: unbind, bind to another rate and draw.
+ * Timings are written to logcat, there is nothing to compare them with on device farm.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RateWidgetBindBenchmark {
+
+    private final static String TAG = "RateWidgetBindBenchmark";
+    private final static int BIND_COUNT = 1000;
+    private final static int WIDTH = 1080;
+    private final static int HEIGHT = 200;
+
+    @Test
+    public void bindWithWarmCache() throws Exception {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            RateWidget widget = createWidget();
+            Canvas canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+            widget.draw(canvas);
+
+            BaseScaleCache cache = BaseScaleCache.getShared();
+            int missCount = cache.getMissCount();
+            long nanos = bindAll(widget, canvas);
+            Log.i(TAG, "warm cache: " + BIND_COUNT + " binds in " + nanos / 1000000 + " ms, "
+                    + nanos / BIND_COUNT / 1000 + " us per bind");
+            assertEquals(missCount, cache.getMissCount());
+        });
+    }
+
+    @Test
+    public void bindWithClearedCache() throws Exception {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            RateWidget widget = createWidget();
+            Canvas canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+            widget.draw(canvas);
+
+            BaseScaleCache cache = BaseScaleCache.getShared();
+            long nanos = 0;
+            for (int i = 0; i < BIND_COUNT; i++){
+                // every bind has to render base scale again, as a widget without the cache did
+                cache.clear();
+                long start = System.nanoTime();
+                widget.unbind();
+                widget.bind(i % (widget.getMaxValue() + 1));
+                widget.draw(canvas);
+                nanos += System.nanoTime() - start;
+            }
+            Log.i(TAG, "cleared cache: " + BIND_COUNT + " binds in " + nanos / 1000000 + " ms, "
+                    + nanos / BIND_COUNT / 1000 + " us per bind");
+        });
+    }
+
+    private static RateWidget createWidget(){
+        Context context = InstrumentationRegistry.getTargetContext();
+        RateWidget widget = new RateWidget(context);
+        widget.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        widget.layout(0, 0, WIDTH, HEIGHT);
+        return widget;
+    }
+
+    private static long bindAll(RateWidget widget, Canvas canvas){
+        int rates = widget.getMaxValue() + 1;
+        long start = System.nanoTime();
+        for (int i = 0; i < BIND_COUNT; i++){
+            widget.unbind();
+            // every 11th item has not been rated yet
+            widget.bind(i % (rates + 1) == rates ? RateWidget.NOT_RATED : i % (rates + 1));
+            widget.draw(canvas);
+        }
+        return System.nanoTime() - start;
+    }
+}
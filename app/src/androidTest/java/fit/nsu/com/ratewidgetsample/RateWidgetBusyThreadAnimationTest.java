@@ -0,0 +1,162 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.PixelCopy;
+import android.view.ViewGroup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Taps the last point of widget and then blocks UI thread for most of the animation, as heavy work
+ * on resume does. Meanwhile test thread copies line of widget from window every few millis and counts
+ * different fill positions which have reached the screen. Counts of frame and layer animation
+ * are written to logcat: frame animation can't move while UI thread is blocked, layer one goes on.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RateWidgetBusyThreadAnimationTest {
+
+    private final static String TAG = "RateWidgetBusyThread";
+    private final static int WIDGET_HEIGHT = 200;
+    // the same as inner point radius of widget
+    private final static int INNER_POINT_RADIUS = 8;
+    // layer animation is handed to RenderThread with the next frame, so UI thread is blocked a bit later
+    private final static long BLOCK_DELAY_MILLIS = 50;
+    private final static long BLOCK_MILLIS = 400;
+    private final static long SAMPLE_PERIOD_MILLIS = 4;
+    private final static long TIMEOUT_MILLIS = 2000;
+
+    private Instrumentation mInstrumentation;
+    private Activity mActivity;
+    private HandlerThread mCopyThread;
+
+    @Before
+    public void setUp() throws Exception {
+        // window pixels are copied with PixelCopy
+        assumeTrue(Build.VERSION.SDK_INT >= 26);
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        Intent intent = new Intent(InstrumentationRegistry.getTargetContext(), NPSActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        mActivity = mInstrumentation.startActivitySync(intent);
+        mCopyThread = new HandlerThread("PixelCopy");
+        mCopyThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mActivity != null){
+            mActivity.finish();
+            mCopyThread.quit();
+        }
+    }
+
+    @Test
+    public void layerAnimationMovesWhileUiThreadIsBlocked() throws Exception {
+        int frameMoves = measure(RateWidget.ANIMATION_MODE_FRAME);
+        int layerMoves = measure(RateWidget.ANIMATION_MODE_LAYER);
+        Log.i(TAG, "fill positions shown while UI thread was blocked for " + BLOCK_MILLIS + " ms: frame animation "
+                + frameMoves + ", layer animation " + layerMoves);
+        assertTrue(layerMoves > frameMoves);
+    }
+
+    /**
+     * @return number of times fill has moved on screen while UI thread was blocked
+     */
+    private int measure(int animationMode) throws Exception {
+        RateWidget[] widget = new RateWidget[1];
+        mInstrumentation.runOnMainSync(() -> {
+            widget[0] = new RateWidget(mActivity);
+            widget[0].setPrewarmEnabled(false);
+            widget[0].setAnimationMode(animationMode);
+            mActivity.addContentView(widget[0],
+                    new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, WIDGET_HEIGHT));
+        });
+        mInstrumentation.waitForIdleSync();
+        RateWidget rateWidget = widget[0];
+        RateLayout layout = RateLayout.obtain(rateWidget.getWidth(), rateWidget.getHeight(),
+                rateWidget.getMaxValue() + 1, INNER_POINT_RADIUS);
+        float[] centers = layout.getPointCenters();
+        int[] location = new int[2];
+        mInstrumentation.runOnMainSync(() -> {
+            rateWidget.getLocationInWindow(location);
+            long now = SystemClock.uptimeMillis();
+            float x = centers[centers.length - 1];
+            float y = layout.getLineY();
+            MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, y, 0);
+            rateWidget.dispatchTouchEvent(down);
+            down.recycle();
+        });
+
+        Thread.sleep(BLOCK_DELAY_MILLIS);
+        CountDownLatch blockStarted = new CountDownLatch(1);
+        CountDownLatch blockEnded = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(() -> {
+            blockStarted.countDown();
+            SystemClock.sleep(BLOCK_MILLIS);
+            blockEnded.countDown();
+        });
+        assertTrue(blockStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        int lineY = location[1] + (int) layout.getLineY();
+        Rect line = new Rect(location[0], lineY, location[0] + rateWidget.getWidth(), lineY + 1);
+        Bitmap pixels = Bitmap.createBitmap(line.width(), 1, Bitmap.Config.ARGB_8888);
+        int selectedColor = RateWidgetStyle.getThemeColorSelected(mActivity);
+        Set<Integer> fillEnds = new HashSet<>();
+        long end = SystemClock.uptimeMillis() + BLOCK_MILLIS - BLOCK_DELAY_MILLIS;
+        while (SystemClock.uptimeMillis() < end){
+            copy(line, pixels);
+            fillEnds.add(findFillEnd(pixels, selectedColor));
+            Thread.sleep(SAMPLE_PERIOD_MILLIS);
+        }
+
+        assertTrue(blockEnded.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        mInstrumentation.runOnMainSync(() -> ((ViewGroup) rateWidget.getParent()).removeView(rateWidget));
+        return fillEnds.size() - 1;
+    }
+
+    private void copy(Rect source, Bitmap pixels) throws InterruptedException {
+        CountDownLatch copied = new CountDownLatch(1);
+        int[] result = new int[1];
+        PixelCopy.request(mActivity.getWindow(), source, pixels, copyResult -> {
+            result[0] = copyResult;
+            copied.countDown();
+        }, new Handler(mCopyThread.getLooper()));
+        assertTrue(copied.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(PixelCopy.SUCCESS, result[0]);
+    }
+
+    /**
+     * @return x of the rightmost pixel of selected color on line
+     */
+    private static int findFillEnd(Bitmap pixels, int selectedColor){
+        for (int x = pixels.getWidth() - 1; x >= 0; x--){
+            if (pixels.getPixel(x, 0) == selectedColor){
+                return x;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,140 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+import android.view.ViewGroup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.disposables.Disposable;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link RateWidget#RATE_DELIVERY_COMMITTED} delivers one rate per settled user choice:
+ * nothing for legs which were cut short by another tap.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RateWidgetCommittedRateTest {
+
+    // the same as inner point radius of widget
+    private final static int INNER_POINT_RADIUS = 8;
+    // longer than the longest animation leg
+    private final static long SETTLE_MILLIS = 1000;
+
+    private Instrumentation mInstrumentation;
+    private Activity mActivity;
+    private RateWidget mWidget;
+    private final List<Integer> mCommitted = Collections.synchronizedList(new ArrayList<>());
+    private Disposable mSubscription;
+
+    @Before
+    public void setUp() throws Exception {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        Intent intent = new Intent(InstrumentationRegistry.getTargetContext(), NPSActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        mActivity = mInstrumentation.startActivitySync(intent);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mSubscription != null){
+            mSubscription.dispose();
+        }
+        mActivity.finish();
+    }
+
+    @Test
+    public void interruptedLayerAnimationCommitsOnlyFinalRate() throws Exception {
+        addWidget(RateWidget.ANIMATION_MODE_LAYER);
+        mInstrumentation.runOnMainSync(() -> {
+            tap(9);
+            // the first leg is still running, reveal of it jumps to its end
+            tap(3);
+        });
+        SystemClock.sleep(SETTLE_MILLIS);
+        mInstrumentation.waitForIdleSync();
+        assertEquals(Collections.singletonList(3), mCommitted);
+    }
+
+    @Test
+    public void interruptedFrameAnimationCommitsOnlyFinalRate() throws Exception {
+        addWidget(RateWidget.ANIMATION_MODE_FRAME);
+        mInstrumentation.runOnMainSync(() -> {
+            tap(9);
+            tap(3);
+        });
+        SystemClock.sleep(SETTLE_MILLIS);
+        mInstrumentation.waitForIdleSync();
+        assertEquals(Collections.singletonList(3), mCommitted);
+    }
+
+    @Test
+    public void bindDuringAnimationCommitsNothing() throws Exception {
+        addWidget(RateWidget.ANIMATION_MODE_FRAME);
+        mInstrumentation.runOnMainSync(() -> tap(9));
+        SystemClock.sleep(SETTLE_MILLIS);
+        mInstrumentation.waitForIdleSync();
+        assertEquals(Collections.singletonList(9), mCommitted);
+
+        // row is recycled for another item while its animation runs
+        mInstrumentation.runOnMainSync(() -> {
+            tap(5);
+            mWidget.bind(3);
+        });
+        SystemClock.sleep(SETTLE_MILLIS);
+        mInstrumentation.waitForIdleSync();
+        assertEquals(Collections.singletonList(9), mCommitted);
+        mInstrumentation.runOnMainSync(() -> {
+            tap(4);
+            mWidget.unbind();
+        });
+        SystemClock.sleep(SETTLE_MILLIS);
+        mInstrumentation.waitForIdleSync();
+        assertEquals(Collections.singletonList(9), mCommitted);
+
+        // the new item picks the rate the old one had, it is a choice of its own
+        mInstrumentation.runOnMainSync(() -> {
+            mWidget.bind(RateWidget.NOT_RATED);
+            tap(9);
+        });
+        SystemClock.sleep(SETTLE_MILLIS);
+        mInstrumentation.waitForIdleSync();
+        assertEquals(Arrays.asList(9, 9), mCommitted);
+    }
+
+    private void addWidget(int animationMode){
+        mInstrumentation.runOnMainSync(() -> {
+            mWidget = new RateWidget(mActivity);
+            mWidget.setPrewarmEnabled(false);
+            mWidget.setAnimationMode(animationMode);
+            mActivity.addContentView(mWidget,
+                    new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 200));
+            mSubscription = mWidget.getRateStream(RateWidget.RATE_DELIVERY_COMMITTED).subscribe(mCommitted::add);
+        });
+        mInstrumentation.waitForIdleSync();
+    }
+
+    private void tap(int rate){
+        RateLayout layout = RateLayout.obtain(mWidget.getWidth(), mWidget.getHeight(),
+                mWidget.getMaxValue() + 1, INNER_POINT_RADIUS);
+        long now = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN,
+                layout.getPointCenter(rate), layout.getLineY(), 0);
+        mWidget.dispatchTouchEvent(down);
+        down.recycle();
+    }
+}
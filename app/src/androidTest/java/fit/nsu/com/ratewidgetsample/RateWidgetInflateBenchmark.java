@@ -0,0 +1,88 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.widget.LinearLayout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Inflates 100 widgets into running activity, once resolving style of every widget as it used to be
+ * and once with shared resolved styles, and writes to logcat how long inflation took.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RateWidgetInflateBenchmark {
+
+    private final static String TAG = "RateWidgetInflateBenchmark";
+    private final static int WIDGETS = 100;
+    private final static int RUNS = 10;
+
+    private Instrumentation mInstrumentation;
+    private Activity mActivity;
+
+    @Before
+    public void setUp() throws Exception {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        Intent intent = new Intent(InstrumentationRegistry.getTargetContext(), NPSActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        mActivity = mInstrumentation.startActivitySync(intent);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mActivity.finish();
+    }
+
+    @Test
+    public void inflateResolvingEveryWidget() throws Exception {
+        report("resolved for every widget", measure(false));
+    }
+
+    @Test
+    public void inflateWithSharedStyle() throws Exception {
+        int resolvedBefore = RateWidgetStyle.getResolvedCount();
+        report("shared style", measure(true));
+        // the first widget resolves theme and style, the rest take them
+        assertTrue(RateWidgetStyle.getResolvedCount() - resolvedBefore <= 2);
+    }
+
+    /**
+     * @return nanos of inflating all widgets summed over runs
+     */
+    private long measure(boolean shared){
+        long[] sum = new long[1];
+        mInstrumentation.runOnMainSync(() -> {
+            LayoutInflater inflater = mActivity.getLayoutInflater();
+            // the first inflation loads layout and classes, it is not measured
+            inflater.inflate(R.layout.fragment_nps, new LinearLayout(mActivity), false);
+            RateWidgetStyle.clear();
+            for (int run = 0; run < RUNS; run++){
+                LinearLayout column = new LinearLayout(mActivity);
+                long start = System.nanoTime();
+                for (int i = 0; i < WIDGETS; i++){
+                    if (!shared){
+                        RateWidgetStyle.clear();
+                    }
+                    inflater.inflate(R.layout.fragment_nps, column, true);
+                }
+                sum[0] += System.nanoTime() - start;
+            }
+        });
+        return sum[0];
+    }
+
+    private static void report(String name, long sum){
+        Log.i(TAG, name + ": " + WIDGETS + " widgets inflated in " + sum / RUNS / 1000
+                + " us, average of " + RUNS + " runs");
+    }
+}
@@ -0,0 +1,199 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks which way widget draws for each mode and that the fallbacks draw the same scale:
+ * layer animation falls back to frames without hardware acceleration, low memory mode falls back
+ * to ARGB_8888 bitmap for translucent colors.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RateWidgetModeSelectionTest {
+
+    private final static int WIDTH = 1080;
+    private final static int HEIGHT = 200;
+    // the same as inner point radius of widget
+    private final static int INNER_POINT_RADIUS = 8;
+    private final static int RATE = 7;
+    // longer than the longest animation leg
+    private final static long SETTLE_MILLIS = 1000;
+
+    private final static int BACKGROUND = 0xFFFFFFFF;
+    private final static int SELECTED = 0xFF3F51B5;
+    private final static int SIMPLE = 0xFFD8D8D8;
+    // dropped low bits and dithering of RGB_565
+    private final static int RGB_565_TOLERANCE = 16;
+
+    private Instrumentation mInstrumentation;
+    private Activity mActivity;
+
+    @Before
+    public void setUp() throws Exception {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        Intent intent = new Intent(InstrumentationRegistry.getTargetContext(), NPSActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        mActivity = mInstrumentation.startActivitySync(intent);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mActivity.finish();
+    }
+
+    @Test
+    public void layerModeAnimatesOnLayerWhenHardwareAccelerated() throws Exception {
+        assumeTrue(Build.VERSION.SDK_INT >= 21);
+        RateWidget widget = addWidget(RateWidget.ANIMATION_MODE_LAYER, RateWidget.DRAW_MODE_CACHED, false);
+        assumeTrue(widget.isHardwareAccelerated());
+        mInstrumentation.runOnMainSync(() -> {
+            tap(widget, RATE);
+            assertTrue(widget.isLayerAnimationRunning());
+        });
+    }
+
+    @Test
+    public void frameModeNeverUsesLayer() throws Exception {
+        RateWidget widget = addWidget(RateWidget.ANIMATION_MODE_FRAME, RateWidget.DRAW_MODE_CACHED, false);
+        mInstrumentation.runOnMainSync(() -> {
+            tap(widget, RATE);
+            assertFalse(widget.isLayerAnimationRunning());
+        });
+    }
+
+    @Test
+    public void layerModeOfDirectDrawingFallsBackToFrames() throws Exception {
+        // there is no bitmap to keep the fill under layer
+        RateWidget widget = addWidget(RateWidget.ANIMATION_MODE_LAYER, RateWidget.DRAW_MODE_DIRECT, false);
+        mInstrumentation.runOnMainSync(() -> {
+            tap(widget, RATE);
+            assertFalse(widget.isLayerAnimationRunning());
+        });
+    }
+
+    @Test
+    public void layerModeFallsBackToFramesWithoutHardwareAcceleration() throws Exception {
+        RateWidget widget = addWidget(RateWidget.ANIMATION_MODE_LAYER, RateWidget.DRAW_MODE_CACHED, true);
+        assertFalse(widget.isHardwareAccelerated());
+        mInstrumentation.runOnMainSync(() -> {
+            tap(widget, RATE);
+            assertFalse(widget.isLayerAnimationRunning());
+        });
+        SystemClock.sleep(SETTLE_MILLIS);
+        mInstrumentation.waitForIdleSync();
+
+        // frames have drawn the scale the same as it is drawn settled
+        mInstrumentation.runOnMainSync(() -> {
+            assertEquals(RATE + 1, widget.getCurrentRate());
+            Bitmap animated = draw(widget, Color.TRANSPARENT);
+            RateWidget settled = new RateWidget(mActivity);
+            settled.setPrewarmEnabled(false);
+            settled.bind(RATE);
+            layout(settled, widget.getWidth(), widget.getHeight());
+            assertTrue(animated.sameAs(draw(settled, Color.TRANSPARENT)));
+        });
+    }
+
+    @Test
+    public void lowMemoryModeOfTranslucentColorDrawsAsDefaultMode() throws Exception {
+        int translucent = 0x803F51B5;
+        mInstrumentation.runOnMainSync(() -> {
+            Bitmap expected = render(RateWidget.RENDER_MODE_DEFAULT, BACKGROUND, translucent, SIMPLE);
+            Bitmap actual = render(RateWidget.RENDER_MODE_LOW_MEMORY, BACKGROUND, translucent, SIMPLE);
+            assertTrue(actual.sameAs(expected));
+
+            expected = render(RateWidget.RENDER_MODE_DEFAULT, 0x80FFFFFF, SELECTED, SIMPLE);
+            actual = render(RateWidget.RENDER_MODE_LOW_MEMORY, 0x80FFFFFF, SELECTED, SIMPLE);
+            assertTrue(actual.sameAs(expected));
+        });
+    }
+
+    @Test
+    public void lowMemoryModeOfOpaqueColorsDrawsScale() throws Exception {
+        mInstrumentation.runOnMainSync(() -> {
+            Bitmap expected = render(RateWidget.RENDER_MODE_DEFAULT, BACKGROUND, SELECTED, SIMPLE);
+            Bitmap actual = render(RateWidget.RENDER_MODE_LOW_MEMORY, BACKGROUND, SELECTED, SIMPLE);
+            for (int y = 0; y < HEIGHT; y++){
+                for (int x = 0; x < WIDTH; x++){
+                    int e = expected.getPixel(x, y);
+                    int a = actual.getPixel(x, y);
+                    String at = "pixel " + x + "," + y;
+                    assertEquals(at, Color.red(e), Color.red(a), RGB_565_TOLERANCE);
+                    assertEquals(at, Color.green(e), Color.green(a), RGB_565_TOLERANCE);
+                    assertEquals(at, Color.blue(e), Color.blue(a), RGB_565_TOLERANCE);
+                }
+            }
+        });
+    }
+
+    private RateWidget addWidget(int animationMode, int drawMode, boolean isSoftware){
+        RateWidget[] widget = new RateWidget[1];
+        mInstrumentation.runOnMainSync(() -> {
+            widget[0] = new RateWidget(mActivity);
+            widget[0].setPrewarmEnabled(false);
+            widget[0].setAnimationMode(animationMode);
+            widget[0].setDrawMode(drawMode);
+            if (isSoftware){
+                widget[0].setLayerType(View.LAYER_TYPE_SOFTWARE, null);
+            }
+            mActivity.addContentView(widget[0], new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, HEIGHT));
+        });
+        mInstrumentation.waitForIdleSync();
+        return widget[0];
+    }
+
+    /**
+     * @return scale of widget rated {@link #RATE} drawn over its background, as window shows it
+     */
+    private Bitmap render(int renderMode, int background, int selected, int simple){
+        RateWidgetStyle style = new RateWidgetStyle(selected, simple, background, 10, false,
+                renderMode, RateWidget.DRAW_MODE_CACHED, RateWidget.ANIMATION_MODE_FRAME);
+        RateWidget widget = new RateWidget(mActivity, style);
+        widget.setPrewarmEnabled(false);
+        widget.bind(RATE);
+        layout(widget, WIDTH, HEIGHT);
+        return draw(widget, background);
+    }
+
+    private static Bitmap draw(View view, int background){
+        Bitmap bitmap = Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(background);
+        view.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    private static void layout(View view, int width, int height){
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, width, height);
+    }
+
+    private static void tap(RateWidget widget, int rate){
+        RateLayout layout = RateLayout.obtain(widget.getWidth(), widget.getHeight(),
+                widget.getMaxValue() + 1, INNER_POINT_RADIUS);
+        long now = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN,
+                layout.getPointCenter(rate), layout.getLineY(), 0);
+        widget.dispatchTouchEvent(down);
+        down.recycle();
+    }
+}
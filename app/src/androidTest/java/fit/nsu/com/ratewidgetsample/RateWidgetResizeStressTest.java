@@ -0,0 +1,104 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Resizes widget thousands of times to arbitrary sizes, like window being dragged in split screen,
+ * and checks that the scale keeps its points at every size and that backing bitmap is reused
+ * instead of being allocated every frame.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RateWidgetResizeStressTest {
+
+    private final static int RESIZE_COUNT = 3000;
+    private final static int MIN_WIDTH = 200;
+    private final static int MAX_WIDTH = 1080;
+    private final static int MIN_HEIGHT = 100;
+    private final static int MAX_HEIGHT = 300;
+
+    @Test
+    public void resizesToRandomSizesAllocateFewTimes() throws Exception {
+        Random random = new Random(42);
+        check(i -> new int[]{
+                MIN_WIDTH + random.nextInt(MAX_WIDTH - MIN_WIDTH + 1),
+                MIN_HEIGHT + random.nextInt(MAX_HEIGHT - MIN_HEIGHT + 1)});
+    }
+
+    @Test
+    public void resizesOfWindowDraggedWiderAllocateFewTimes() throws Exception {
+        // one pixel wider every frame, then back, as a divider dragged there and back
+        int span = MAX_WIDTH - MIN_WIDTH;
+        check(i -> {
+            int step = i % (2 * span);
+            return new int[]{MIN_WIDTH + (step < span ? step : 2 * span - step), MAX_HEIGHT};
+        });
+    }
+
+    private interface Sizes {
+        int[] get(int i);
+    }
+
+    private static void check(Sizes sizes){
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            RateWidget widget = new RateWidget(InstrumentationRegistry.getTargetContext());
+            widget.setPrewarmEnabled(false);
+            widget.setMetricsEnabled(true);
+            widget.bind(7);
+            Canvas canvas = new Canvas(Bitmap.createBitmap(MAX_WIDTH, MAX_HEIGHT, Bitmap.Config.ARGB_8888));
+            BitmapPool pool = BitmapPool.getShared();
+            pool.clear();
+            long missCount = pool.getMissCount();
+
+            for (int i = 0; i < RESIZE_COUNT; i++){
+                int[] size = sizes.get(i);
+                layout(widget, size[0], size[1]);
+                widget.draw(canvas);
+
+                RateLayout layout = widget.getRateLayout();
+                assertEquals(size[0], layout.getWidth());
+                assertEquals(size[1], layout.getHeight());
+                assertEquals(11, layout.getPointCount());
+                // getCurrentRate is 1-based
+                assertEquals(8, widget.getCurrentRate());
+            }
+
+            // bitmap grows by half at least, so every side outgrows it a few times only
+            long maxAllocations = 1 + growthCount(MIN_WIDTH, MAX_WIDTH) + growthCount(MIN_HEIGHT, MAX_HEIGHT);
+            long misses = pool.getMissCount() - missCount;
+            assertTrue(misses + " pool misses", misses <= maxAllocations);
+            RateWidgetMetrics metrics = widget.getMetricsSnapshot();
+            assertTrue(metrics.getBitmapAllocationCount() + " allocations",
+                    metrics.getBitmapAllocationCount() <= maxAllocations);
+            // replaced bitmaps go to pool, which never grows over its limit
+            assertTrue(pool.getSize() <= Runtime.getRuntime().maxMemory() / 16);
+        });
+    }
+
+    /**
+     * @return the largest number of times bitmap side grows from min to max
+     */
+    private static int growthCount(int min, int max){
+        int count = 0;
+        for (int size = min; size < max; size += size / 2){
+            count++;
+        }
+        return count;
+    }
+
+    private static void layout(View view, int width, int height){
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, width, height);
+    }
+}
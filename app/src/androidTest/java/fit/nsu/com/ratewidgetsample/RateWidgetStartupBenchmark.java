@@ -0,0 +1,100 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.ViewGroup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Adds widget to running activity without and with prewarm and writes to logcat how long it took
+ * to get scale on screen and how long the first draw held main thread, before and after side by side.
+ * With prewarm the first frame draws scale directly and prewarmed bitmap comes with a later one.
+ * Run it together with systrace to see RateWidget.prewarm and RateWidget.initialBitmap sections.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RateWidgetStartupBenchmark {
+
+    private final static String TAG = "RateWidgetStartupBenchmark";
+    private final static int RUNS = 20;
+    private final static long TIMEOUT_MILLIS = 2000;
+
+    private Instrumentation mInstrumentation;
+    private Activity mActivity;
+
+    @Before
+    public void setUp() throws Exception {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        Intent intent = new Intent(InstrumentationRegistry.getTargetContext(), NPSActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        mActivity = mInstrumentation.startActivitySync(intent);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mActivity.finish();
+    }
+
+    @Test
+    public void firstFrameWithAndWithoutPrewarm() throws Exception {
+        long[] before = measure(false);
+        long[] after = measure(true);
+        report("without prewarm", before);
+        report("with prewarm", after);
+        Log.i(TAG, "prewarm changes time to first frame by " + (after[0] - before[0]) / RUNS / 1000
+                + " us and main thread draw by " + (after[1] - before[1]) / RUNS / 1000 + " us");
+    }
+
+    /**
+     * @return sums of time to first frame and of first draw time over all runs
+     */
+    private long[] measure(boolean prewarm) throws Exception {
+        long[] sums = new long[2];
+        for (int i = 0; i < RUNS; i++){
+            // every run starts with nothing rendered, as a cold screen does
+            BaseScaleCache.getShared().clear();
+            RateWidget[] widget = new RateWidget[1];
+            mInstrumentation.runOnMainSync(() -> {
+                widget[0] = new RateWidget(mActivity);
+                widget[0].setPrewarmEnabled(prewarm);
+                widget[0].setMetricsEnabled(true);
+                mActivity.addContentView(widget[0],
+                        new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 200));
+            });
+            RateWidgetMetrics metrics = waitForFirstFrame(widget[0]);
+            sums[0] += metrics.getTimeToFirstFrameNanos();
+            sums[1] += metrics.getFirstFrameDrawNanos();
+            mInstrumentation.runOnMainSync(() -> ((ViewGroup) widget[0].getParent()).removeView(widget[0]));
+        }
+        return sums;
+    }
+
+    private RateWidgetMetrics waitForFirstFrame(RateWidget widget) throws Exception {
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
+        RateWidgetMetrics[] metrics = new RateWidgetMetrics[1];
+        while (SystemClock.uptimeMillis() < deadline){
+            mInstrumentation.runOnMainSync(() -> metrics[0] = widget.getMetricsSnapshot());
+            if (metrics[0].getTimeToFirstFrameNanos() != 0){
+                return metrics[0];
+            }
+            Thread.sleep(5);
+        }
+        fail("Scale has not been drawn in " + TIMEOUT_MILLIS + " ms");
+        return null;
+    }
+
+    private static void report(String name, long[] sums){
+        Log.i(TAG, name + ": time to first frame " + sums[0] / RUNS / 1000 + " us, main thread draw "
+                + sums[1] / RUNS / 1000 + " us, average of " + RUNS + " runs");
+    }
+}
@@ -0,0 +1,109 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Compares survey of N questions made of N {@link RateWidget}s with a single {@link SurveyView}:
+ * memory taken, layout time and time of the first draw. Results are written to logcat.
+ *
+ * Views are drawn into {@link Picture}, that is recorded like a display list of hardware
+ * rendering, so tall surveys need no bitmap of their whole height.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SurveyViewBenchmark {
+
+    private final static String TAG = "SurveyViewBenchmark";
+    private final static int WIDTH = 1080;
+    private final static int ROW_HEIGHT = 200;
+
+    @Test
+    public void tenQuestions() throws Exception {
+        compare(10);
+    }
+
+    @Test
+    public void fiftyQuestions() throws Exception {
+        compare(50);
+    }
+
+    @Test
+    public void twoHundredQuestions() throws Exception {
+        compare(200);
+    }
+
+    private void compare(int questionCount){
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            Context context = InstrumentationRegistry.getTargetContext();
+            // every run starts from nothing cached
+            BaseScaleCache.getShared().clear();
+            BitmapPool.getShared().clear();
+            measure("widgets", questionCount, () -> {
+                LinearLayout column = new LinearLayout(context);
+                column.setOrientation(LinearLayout.VERTICAL);
+                for (int i = 0; i < questionCount; i++){
+                    RateWidget widget = new RateWidget(context);
+                    widget.setPrewarmEnabled(false);
+                    column.addView(widget, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ROW_HEIGHT));
+                }
+                return column;
+            });
+
+            BaseScaleCache.getShared().clear();
+            BitmapPool.getShared().clear();
+            measure("survey", questionCount, () -> {
+                SurveyView survey = new SurveyView(context);
+                survey.setQuestionCount(questionCount);
+                survey.setRowHeight(ROW_HEIGHT);
+                return survey;
+            });
+        });
+    }
+
+    private interface ViewFactory {
+        View create();
+    }
+
+    private static void measure(String name, int questionCount, ViewFactory factory){
+        long memoryBefore = usedMemory();
+        long start = System.nanoTime();
+        View view = factory.create();
+        long created = System.nanoTime();
+        int height = questionCount * ROW_HEIGHT;
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, height);
+        long laidOut = System.nanoTime();
+        Picture picture = new Picture();
+        Canvas canvas = picture.beginRecording(WIDTH, height);
+        view.draw(canvas);
+        picture.endRecording();
+        long drawn = System.nanoTime();
+        long memory = usedMemory() - memoryBefore;
+
+        Log.i(TAG, name + " of " + questionCount + " questions: create " + (created - start) / 1000
+                + " us, layout " + (laidOut - created) / 1000 + " us, first draw " + (drawn - laidOut) / 1000
+                + " us, memory " + memory / 1024 + " KiB");
+        // view has to live until memory is measured
+        view.setTag(picture);
+    }
+
+    private static long usedMemory(){
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        runtime.gc();
+        // bitmap pixels live in native heap since Android 8
+        return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    }
+}
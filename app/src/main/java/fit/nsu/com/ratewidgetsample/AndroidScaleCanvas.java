@@ -0,0 +1,48 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * {@link ScaleCanvas} on top of android canvas.
+ * Shapes are drawn with given paint, labels are taken from {@link LabelCache} with paints of their own.
+ */
+class AndroidScaleCanvas implements ScaleCanvas {
+
+    private Canvas mCanvas;
+    private final Paint mPaint;
+    private LabelCache mLabels;
+
+    AndroidScaleCanvas(Paint paint){
+        mPaint = paint;
+    }
+
+    void setCanvas(Canvas canvas){
+        mCanvas = canvas;
+    }
+
+    /**
+     * @param labels labels of the scale being drawn, canvas without them can draw shapes only
+     */
+    void setLabels(LabelCache labels){
+        mLabels = labels;
+    }
+
+    @Override
+    public void drawLine(float startX, float stopX, float y, float strokeWidth, int color) {
+        mPaint.setColor(color);
+        mPaint.setStrokeWidth(strokeWidth);
+        mCanvas.drawLine(startX, y, stopX, y, mPaint);
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, int color) {
+        mPaint.setColor(color);
+        mCanvas.drawCircle(centerX, centerY, radius, mPaint);
+    }
+
+    @Override
+    public void drawLabel(int index, String text, float centerX, float baselineY, boolean selected, int color) {
+        mLabels.draw(mCanvas, index, centerX, baselineY, selected, color);
+    }
+}
@@ -0,0 +1,204 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.util.LruCache;
+
+/**
+ * Process-wide cache of pre-rendered scales without labels, keyed by layout, colors and bitmap config.
+ *
+ * Every scale is kept twice: with nothing filled and with everything filled.
+ * Any rate is composed from these two with a clipped copy, so binding widget
+ * in a list to another item does not draw points one by one.
+ */
+public final class BaseScaleCache {
+
+    private static BaseScaleCache sShared;
+
+    private final LruCache<Key, BaseScale> mCache;
+
+    public BaseScaleCache(int maxSizeBytes){
+        mCache = new LruCache<Key, BaseScale>(maxSizeBytes){
+            @Override
+            protected int sizeOf(Key key, BaseScale value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * @return cache shared by all widgets, it takes 1/32 of heap at most
+     */
+    public static synchronized BaseScaleCache getShared(){
+        if (sShared == null){
+            sShared = new BaseScaleCache((int) (Runtime.getRuntime().maxMemory() / 32));
+        }
+        return sShared;
+    }
+
+    /**
+     * @return cached scale drawn by renderer, it is rendered on the calling thread on miss
+     */
+    public BaseScale obtain(ScaleRenderer renderer, Bitmap.Config config){
+        Key key = new Key(renderer.getLayout(), renderer.getSelectedColor(), renderer.getSimpleColor(),
+                renderer.getBackgroundColor(), config);
+        BaseScale scale = mCache.get(key);
+        if (scale == null){
+            scale = new BaseScale(key, renderer);
+            mCache.put(key, scale);
+        }
+        return scale;
+    }
+
+    public void clear(){
+        mCache.evictAll();
+    }
+
+    public int getHitCount(){
+        return mCache.hitCount();
+    }
+
+    public int getMissCount(){
+        return mCache.missCount();
+    }
+
+    public int getSizeBytes(){
+        return mCache.size();
+    }
+
+    /**
+     * Pair of immutable bitmaps, they are shared by widgets and never recycled
+     */
+    public static final class BaseScale {
+
+        private final Key mKey;
+        private final Bitmap mEmpty;
+        private final Bitmap mFilled;
+        // pixels are replaced, otherwise antialiased edges would be blended twice
+        private final Paint mCopyPaint = new Paint();
+
+        private BaseScale(Key key, ScaleRenderer renderer){
+            mKey = key;
+            RateLayout layout = renderer.getLayout();
+            mEmpty = render(renderer, ScaleRenderer.NO_FILL);
+            mFilled = render(renderer, layout.getLineEndX());
+            mCopyPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+        }
+
+        private Bitmap render(ScaleRenderer renderer, float fillX){
+            RateLayout layout = renderer.getLayout();
+            Bitmap bitmap = Bitmap.createBitmap(layout.getWidth(), layout.getHeight(), mKey.mConfig);
+            Canvas canvas = new Canvas(bitmap);
+            if (mKey.mConfig == Bitmap.Config.RGB_565){
+                canvas.drawColor(mKey.mBackgroundColor);
+            }
+            Paint paint = new Paint();
+            paint.setAntiAlias(true);
+            paint.setDither(true);
+            // there are no labels in base scale, so canvas gets no LabelCache
+            AndroidScaleCanvas scaleCanvas = new AndroidScaleCanvas(paint);
+            scaleCanvas.setCanvas(canvas);
+            renderer.drawBase(scaleCanvas, fillX, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
+            return bitmap;
+        }
+
+        /**
+         * Replace canvas content (within its clip) with scale filled up to fillX.
+         * Points crossing fillX and labels are left for {@link ScaleRenderer#drawFillEdge}
+         * and {@link ScaleRenderer#drawOverlay}.
+         */
+        public void compose(Canvas canvas, float fillX){
+            canvas.drawBitmap(mEmpty, 0, 0, mCopyPaint);
+            if (fillX == ScaleRenderer.NO_FILL){
+                return;
+            }
+            canvas.save();
+            canvas.clipRect(0, 0, fillX, mFilled.getHeight());
+            canvas.drawBitmap(mFilled, 0, 0, mCopyPaint);
+            canvas.restore();
+        }
+
+        /**
+         * Draw scale filled up to fillX over canvas content, e.g. right on view canvas.
+         * Halves are clipped apart, so no pixel is blended twice.
+         */
+        public void draw(Canvas canvas, float fillX){
+            int width = mEmpty.getWidth();
+            int height = mEmpty.getHeight();
+            canvas.save();
+            canvas.clipRect(Math.max(fillX, 0f), 0, width, height);
+            canvas.drawBitmap(mEmpty, 0, 0, null);
+            canvas.restore();
+            if (fillX == ScaleRenderer.NO_FILL){
+                return;
+            }
+            canvas.save();
+            canvas.clipRect(0, 0, fillX, height);
+            canvas.drawBitmap(mFilled, 0, 0, null);
+            canvas.restore();
+        }
+
+        /**
+         * Draw the whole filled scale, e.g. into a layer revealed over the empty one
+         */
+        public void drawFilled(Canvas canvas){
+            canvas.drawBitmap(mFilled, 0, 0, null);
+        }
+
+        public boolean isBuiltFor(ScaleRenderer renderer, Bitmap.Config config){
+            return mKey.matches(renderer.getLayout(), renderer.getSelectedColor(), renderer.getSimpleColor(),
+                    renderer.getBackgroundColor(), config);
+        }
+
+        int getByteCount(){
+            return mEmpty.getByteCount() + mFilled.getByteCount();
+        }
+    }
+
+    private static final class Key {
+        private final RateLayout mLayout;
+        private final int mSelectedColor;
+        private final int mSimpleColor;
+        private final int mBackgroundColor;
+        private final Bitmap.Config mConfig;
+
+        Key(RateLayout layout, int selectedColor, int simpleColor, int backgroundColor, Bitmap.Config config){
+            mLayout = layout;
+            mSelectedColor = selectedColor;
+            mSimpleColor = simpleColor;
+            mBackgroundColor = backgroundColor;
+            mConfig = config;
+        }
+
+        boolean matches(RateLayout layout, int selectedColor, int simpleColor, int backgroundColor, Bitmap.Config config){
+            return mLayout.matches(layout.getWidth(), layout.getHeight(), layout.getPointCount(), layout.getInnerPointRadius())
+                    && mSelectedColor == selectedColor && mSimpleColor == simpleColor
+                    && mBackgroundColor == backgroundColor && mConfig == config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)){
+                return false;
+            }
+            Key key = (Key) o;
+            return key.matches(mLayout, mSelectedColor, mSimpleColor, mBackgroundColor, mConfig);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mLayout.getWidth();
+            result = 31 * result + mLayout.getHeight();
+            result = 31 * result + mLayout.getPointCount();
+            result = 31 * result + mLayout.getInnerPointRadius();
+            result = 31 * result + mSelectedColor;
+            result = 31 * result + mSimpleColor;
+            result = 31 * result + mBackgroundColor;
+            result = 31 * result + mConfig.ordinal();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+/**
+ * Process-wide pool of widget backing bitmaps keyed by size and config.
+ *
+ * Widgets borrow bitmap on first draw and return it when it is not needed anymore,
+ * so identical widgets in scrolling lists do not allocate new bitmaps all the time.
+ */
+public final class BitmapPool {
+
+    private static BitmapPool sShared;
+
+    private final KeyedLruPool<Bitmap> mPool;
+
+    public BitmapPool(long maxSizeBytes){
+        mPool = new KeyedLruPool<>(maxSizeBytes, Bitmap::recycle);
+    }
+
+    /**
+     * @return pool shared by all widgets, it takes 1/16 of heap at most
+     */
+    public static synchronized BitmapPool getShared(){
+        if (sShared == null){
+            sShared = new BitmapPool(Runtime.getRuntime().maxMemory() / 16);
+        }
+        return sShared;
+    }
+
+    /**
+     * @return transparent mutable bitmap, either pooled or a new one
+     */
+    public Bitmap obtain(int width, int height, Bitmap.Config config){
+        Bitmap bitmap = mPool.acquire(key(width, height, config));
+        if (bitmap == null){
+            return Bitmap.createBitmap(width, height, config);
+        }
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    /**
+     * Return bitmap to pool, caller must not use it anymore
+     */
+    public void release(Bitmap bitmap){
+        if (bitmap.isRecycled() || !bitmap.isMutable()){
+            return;
+        }
+        mPool.release(key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()),
+                bitmap, bitmap.getAllocationByteCount());
+    }
+
+    public void clear(){
+        mPool.clear();
+    }
+
+    private static long key(int width, int height, Bitmap.Config config){
+        return ((long) width << 32) | ((long) height << 8) | config.ordinal();
+    }
+
+    public long getHitCount(){
+        return mPool.getHitCount();
+    }
+
+    public long getMissCount(){
+        return mPool.getMissCount();
+    }
+
+    public long getEvictionCount(){
+        return mPool.getEvictionCount();
+    }
+
+    /**
+     * @return bytes taken by pooled bitmaps
+     */
+    public long getSize(){
+        return mPool.getSize();
+    }
+}
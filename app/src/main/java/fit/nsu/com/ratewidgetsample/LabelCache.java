@@ -0,0 +1,215 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+/**
+ * Measured and, for short scales, pre-rasterised labels of {@link RateLabels}.
+ *
+ * Label is measured the first time it is drawn or measured and kept per text sizes in both styles,
+ * so a long scale measures only labels it has shown and drawing a label is an array lookup
+ * and either a blit from alpha atlas tinted by paint color or a single drawText.
+ * Atlas of a short scale is built on its first draw.
+ * Identical widgets share one instance through {@link #obtain(int, float, float)}.
+ * Measuring and drawing are not thread-safe, labels are used on UI thread only.
+ */
+final class LabelCache {
+
+    private final static Typeface TYPEFACE_SELECTED = Typeface.create(Typeface.DEFAULT, Typeface.BOLD);
+    private final static Typeface TYPEFACE_SIMPLE = Typeface.create(Typeface.DEFAULT, Typeface.NORMAL);
+
+    private final static int CACHE_SIZE = 4;
+    //most recently used cache goes first
+    private final static LabelCache[] sCache = new LabelCache[CACHE_SIZE];
+
+    //atlas of longer scales is not worth its memory, only a few labels are shown at once
+    private final static int ATLAS_MAX_BYTES = 64 * 1024;
+
+    private final int mCount;
+    private final Style mSelected;
+    private final Style mSimple;
+
+    private LabelCache(int count, float selectedTextSize, float simpleTextSize){
+        mCount = count;
+        String[] labels = RateLabels.obtain(count);
+        mSelected = new Style(labels, count, selectedTextSize, TYPEFACE_SELECTED);
+        mSimple = new Style(labels, count, simpleTextSize, TYPEFACE_SIMPLE);
+    }
+
+    /**
+     * Take labels from process-wide cache or measure and cache new ones
+     */
+    static LabelCache obtain(int count, float selectedTextSize, float simpleTextSize){
+        synchronized (sCache) {
+            int i = 0;
+            for (; i < CACHE_SIZE && sCache[i] != null; ++i){
+                if (sCache[i].matches(count, selectedTextSize, simpleTextSize)){
+                    break;
+                }
+            }
+            LabelCache cache;
+            if (i < CACHE_SIZE && sCache[i] != null){
+                cache = sCache[i];
+            } else {
+                cache = new LabelCache(count, selectedTextSize, simpleTextSize);
+                i = Math.min(i, CACHE_SIZE - 1);
+            }
+            System.arraycopy(sCache, 0, sCache, 1, i);
+            sCache[0] = cache;
+            return cache;
+        }
+    }
+
+    boolean matches(int count, float selectedTextSize, float simpleTextSize){
+        return mCount == count
+                && mSelected.mTextSize == selectedTextSize && mSimple.mTextSize == simpleTextSize;
+    }
+
+    /**
+     * Draw label of point index horizontally centered by given x
+     */
+    void draw(Canvas canvas, int index, float centerX, float baselineY, boolean selected, int color){
+        (selected ? mSelected : mSimple).draw(canvas, index, centerX, baselineY, color);
+    }
+
+    /**
+     * @return advance width of label of point index
+     */
+    float measure(int index, boolean selected){
+        return (selected ? mSelected : mSimple).measure(index);
+    }
+
+    /**
+     * @return vertical center of digits relative to baseline, it is negative
+     */
+    float getDigitCenterY(boolean selected){
+        return (selected ? mSelected : mSimple).mDigitCenterY;
+    }
+
+    private static final class Style {
+        private final float mTextSize;
+        private final String[] mLabels;
+        private final int mCount;
+        private final Paint mPaint = new Paint();
+
+        //left, top, right, bottom of label i relative to drawing origin are at 4 * i
+        private final int[] mBounds;
+        private final float[] mWidths;
+        private final boolean[] mIsMeasured;
+        private final float mDigitCenterY;
+        private final Rect mTextBounds = new Rect();
+
+        //labels in a row, label i starts at mAtlasX[i]; null when atlas is too big or not built yet
+        private Bitmap mAtlas;
+        private int[] mAtlasX;
+        //atlas row starts at the highest top of all labels
+        private int mAtlasTop;
+        private boolean mIsAtlasChecked = false;
+        private final Rect mSrc = new Rect();
+        private final Rect mDst = new Rect();
+
+        Style(String[] labels, int count, float textSize, Typeface typeface){
+            mTextSize = textSize;
+            mLabels = labels;
+            mCount = count;
+            mPaint.setAntiAlias(true);
+            mPaint.setTextSize(textSize);
+            mPaint.setTypeface(typeface);
+
+            mBounds = new int[4 * count];
+            mWidths = new float[count];
+            mIsMeasured = new boolean[count];
+            mPaint.getTextBounds("0", 0, 1, mTextBounds);
+            mDigitCenterY = mTextBounds.exactCenterY();
+        }
+
+        float measure(int index){
+            ensureMeasured(index);
+            return mWidths[index];
+        }
+
+        private void ensureMeasured(int index){
+            if (mIsMeasured[index]){
+                return;
+            }
+            String label = mLabels[index];
+            mPaint.getTextBounds(label, 0, label.length(), mTextBounds);
+            mBounds[4 * index] = mTextBounds.left;
+            mBounds[4 * index + 1] = mTextBounds.top;
+            mBounds[4 * index + 2] = mTextBounds.right;
+            mBounds[4 * index + 3] = mTextBounds.bottom;
+            mWidths[index] = mPaint.measureText(label);
+            mIsMeasured[index] = true;
+        }
+
+        /**
+         * Build atlas if scale is short enough. The last label is the widest one, so it tells
+         * whether atlas may fit before all labels are measured.
+         */
+        private void ensureAtlas(){
+            if (mIsAtlasChecked){
+                return;
+            }
+            mIsAtlasChecked = true;
+            if (mCount == 0){
+                return;
+            }
+            int last = mCount - 1;
+            ensureMeasured(last);
+            // one pixel gap keeps antialiased edges of neighbours apart
+            long widest = mBounds[4 * last + 2] - mBounds[4 * last] + 1;
+            long highest = mBounds[4 * last + 3] - mBounds[4 * last + 1];
+            if (widest * mCount * highest > ATLAS_MAX_BYTES){
+                return;
+            }
+            int top = 0;
+            int bottom = 0;
+            long atlasWidth = 0;
+            for (int i = 0; i < mCount; ++i){
+                ensureMeasured(i);
+                top = Math.min(top, mBounds[4 * i + 1]);
+                bottom = Math.max(bottom, mBounds[4 * i + 3]);
+                atlasWidth += mBounds[4 * i + 2] - mBounds[4 * i] + 1;
+            }
+            int atlasHeight = bottom - top;
+            if (atlasWidth * atlasHeight > ATLAS_MAX_BYTES){
+                return;
+            }
+            mAtlasX = new int[mCount];
+            mAtlas = Bitmap.createBitmap((int) atlasWidth, Math.max(1, atlasHeight), Bitmap.Config.ALPHA_8);
+            Canvas canvas = new Canvas(mAtlas);
+            // alpha of color left by previous draw would stay in atlas and be applied twice
+            mPaint.setColor(Color.BLACK);
+            int x = 0;
+            for (int i = 0; i < mCount; ++i){
+                mAtlasX[i] = x;
+                canvas.drawText(mLabels[i], x - mBounds[4 * i], -top, mPaint);
+                x += mBounds[4 * i + 2] - mBounds[4 * i] + 1;
+            }
+            mAtlasTop = top;
+        }
+
+        void draw(Canvas canvas, int index, float centerX, float baselineY, int color){
+            ensureAtlas();
+            ensureMeasured(index);
+            int left = mBounds[4 * index];
+            int right = mBounds[4 * index + 2];
+            float x = centerX - (left + right) / 2f;
+            mPaint.setColor(color);
+            if (mAtlas == null){
+                canvas.drawText(mLabels[index], x, baselineY, mPaint);
+                return;
+            }
+            // alpha bitmap is drawn with paint color; label snaps to whole pixels
+            int dstLeft = Math.round(x) + left;
+            int dstTop = Math.round(baselineY) + mAtlasTop;
+            mSrc.set(mAtlasX[index], 0, mAtlasX[index] + right - left, mAtlas.getHeight());
+            mDst.set(dstLeft, dstTop, dstLeft + mSrc.width(), dstTop + mSrc.height());
+            canvas.drawBitmap(mAtlas, mSrc, mDst, mPaint);
+        }
+    }
+}
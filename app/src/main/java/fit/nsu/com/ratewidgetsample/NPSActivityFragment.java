@@ -1,17 +1,39 @@
 package fit.nsu.com.ratewidgetsample;
 
+import android.content.Context;
 import android.support.v4.app.Fragment;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import io.reactivex.Maybe;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
 
 public class NPSActivityFragment extends Fragment {
 
+    private final static String TAG = "NPSActivityFragment";
+    private final static int NPS_QUESTION_ID = 1;
+    private final static String DRAFT_FILE_NAME = "nps.draft";
+    private final static Executor DRAFT_EXECUTOR = command -> Schedulers.io().scheduleDirect(command);
+
+    private static SurveySnapshotStore sDraftStore;
+
     private Button mRateButton;
     private RateWidget mRateWidget;
+    private Disposable mRecording;
+    private final CompositeDisposable mDraftSubscriptions = new CompositeDisposable();
+    private final int[] mDraft = new int[1];
 
     public NPSActivityFragment() {
     }
@@ -21,6 +43,72 @@ public class NPSActivityFragment extends Fragment {
             Bundle savedInstanceState) {
         View rootView = inflater.inflate(R.layout.fragment_nps, container, false);
 
+        mRateWidget = rootView.findViewById(R.id.rate_image);
+        SurveySnapshotStore draftStore = getDraftStore(getContext());
+        // recorded rate is not a draft anymore
+        mRecording = RatingRecorder.getShared(getContext())
+                .record(mRateWidget, NPS_QUESTION_ID, rate -> clearDraft(draftStore));
+        restoreDraft(draftStore);
+
         return rootView;
     }
+
+    /**
+     * Show rate picked before process was killed and keep picked rates as a draft.
+     * Draft is read in background and shown only if nothing has been picked or restored meanwhile.
+     */
+    private void restoreDraft(SurveySnapshotStore store){
+        mDraftSubscriptions.add(Maybe.fromCallable(() -> readDraft(store))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(rate -> {
+                    if (mRateWidget.getCurrentRate() == 0 && rate <= mRateWidget.getMaxValue()){
+                        mRateWidget.bind(rate);
+                    }
+                }));
+        mDraftSubscriptions.add(mRateWidget.getRatedSubject().subscribe(rate -> {
+            mDraft[0] = rate;
+            store.submit(mDraft, 1, DRAFT_EXECUTOR);
+        }));
+    }
+
+    /**
+     * @return rate of draft or null if there is none
+     */
+    private static Integer readDraft(SurveySnapshotStore store){
+        try {
+            int[] rates = store.read();
+            return rates != null && rates.length == 1 && rates[0] != RateWidget.NOT_RATED ? rates[0] : null;
+        } catch (IOException e){
+            Log.e(TAG, "Failed to read draft", e);
+            return null;
+        }
+    }
+
+    private static void clearDraft(SurveySnapshotStore store){
+        // empty snapshot replaces draft, a rate picked after it is submitted over it as usual
+        store.submit(new int[0], 0, DRAFT_EXECUTOR);
+    }
+
+    private static synchronized SurveySnapshotStore getDraftStore(Context context){
+        if (sDraftStore == null){
+            File file = new File(context.getApplicationContext().getFilesDir(), DRAFT_FILE_NAME);
+            sDraftStore = new SurveySnapshotStore(file, 1);
+        }
+        return sDraftStore;
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        // rate picked right before it is still recorded
+        mRecording.dispose();
+        mDraftSubscriptions.clear();
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        RatingRecorder.getShared(getContext()).flush().subscribe();
+    }
 }
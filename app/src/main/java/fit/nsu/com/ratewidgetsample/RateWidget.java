@@ -1,37 +1,42 @@
 package fit.nsu.com.ratewidgetsample;
 
-import android.animation.Animator;
-import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.PointF;
+import android.graphics.PorterDuff;
 import android.graphics.Rect;
-import android.graphics.Typeface;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
+import android.util.Log;
+import android.util.Pair;
+import android.view.Choreographer;
+import android.view.Display;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewParent;
-import android.view.animation.AccelerateInterpolator;
-
-import java.util.ArrayList;
-import java.util.List;
 
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
+import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subjects.PublishSubject;
 
+import java.util.concurrent.TimeUnit;
+
 import static java.lang.Math.abs;
-import static java.lang.Math.log;
 
 /**
  * Created by hekpo on 13.12.2017.
@@ -39,58 +44,165 @@ import static java.lang.Math.log;
 
 public class RateWidget extends View {
 
-    private final static int INIT_STATE = -1;
+    private final static String TAG = "RateWidget";
     private final static String CURRENT_STATE_TAG = "current_state_tag";
-    private final static int DEFAULT_COLOR_SELECTED = 0xfffea002;
+    final static int DEFAULT_COLOR_SELECTED = 0xfffea002;
+    final static int DEFAULT_COLOR_SIMPLE = 0xFFD8D8D8;
+    final static int DEFAULT_COLOR_BACKGROUND = 0xFFFFFFFF;
+    final static int DEFAULT_MAX_VALUE = 10;
+
+    /**
+     * Backing bitmap is ARGB_8888 and transparent where nothing is drawn
+     */
+    public final static int RENDER_MODE_DEFAULT = 0;
+    /**
+     * Backing bitmap is RGB_565 filled with background color, that is half of default memory.
+     * Falls back to default mode if any of configured colors is translucent.
+     */
+    public final static int RENDER_MODE_LOW_MEMORY = 1;
+
+    /**
+     * Scale is drawn into private bitmap, animation repaints only changed parts of it
+     */
+    public final static int DRAW_MODE_CACHED = 0;
+    /**
+     * Scale is drawn right on view canvas from state every frame, there is no bitmap at all
+     */
+    public final static int DRAW_MODE_DIRECT = 1;
+
+    /**
+     * Fill moves by repainting bitmap on every display frame, busy UI thread stops it
+     */
+    public final static int ANIMATION_MODE_FRAME = 0;
+    /**
+     * Fill is revealed as a layer over static scale by animator running on RenderThread, so it keeps
+     * moving while UI thread is busy. Works in cached draw mode on hardware rendered window
+     * since Android 5.0, otherwise frame animation runs. New tap makes running animation jump to its end.
+     */
+    public final static int ANIMATION_MODE_LAYER = 1;
+
+    /**
+     * Every picked rate, only the latest one is kept for a slow subscriber
+     */
+    public final static int RATE_DELIVERY_LATEST = 0;
+    /**
+     * Picked rates without repeats of the same rate
+     */
+    public final static int RATE_DELIVERY_DISTINCT = 1;
+    /**
+     * The latest picked rate once per sample period, nothing if rate has not been picked during period.
+     * Rates are delivered on computation scheduler.
+     */
+    public final static int RATE_DELIVERY_SAMPLED = 2;
+    /**
+     * Rate which is shown after animation has settled, intermediate taps during animation are skipped
+     */
+    public final static int RATE_DELIVERY_COMMITTED = 3;
+
+    public final static long DEFAULT_SAMPLE_PERIOD_MILLIS = 100;
+
+    /**
+     * Rate of widget nothing has been picked on
+     */
+    public final static int NOT_RATED = RateState.INIT_STATE;
 
     private Paint mPaint;
-    private int mLineStrokeWidth;
     private int mInnerPointRadius;
-    private int mOuterPointRadius;
-    private float mDeltedOuterPointRadius;
-    private int mSelectedPointRadius;
-    private float mLineCoordinateY;
 
     private int mPointNumber;
-    private List<Integer> mPointsCenters = new ArrayList<>();
+    private RateLayout mLayout;
+    private HitTestIndex mHitTestIndex;
+    //negative value means selected point radius
+    private float mTouchSlop = -1f;
+    private String[] mLabels;
+    private LabelCache mLabelCache;
 
     private Bitmap mBitmap;
+    private int mRenderMode = RENDER_MODE_DEFAULT;
+    private int mDrawMode = DRAW_MODE_CACHED;
+    private int mAnimationMode = ANIMATION_MODE_FRAME;
+    //created on the first layer animation
+    private ScaleLayers mLayers;
+    private ScaleRenderer mRenderer;
+    private AndroidScaleCanvas mBitmapScaleCanvas;
+    private AndroidScaleCanvas mViewScaleCanvas;
+    //pre-rendered scale shared with other widgets of the same look
+    private BaseScaleCache.BaseScale mBaseScale;
+    private final RateState mState = new RateState();
+    private final RateAnimationDriver mDriver = new RateAnimationDriver(mState);
+    private final Choreographer.FrameCallback mAnimationFrameCallback = this::onAnimationFrame;
+    //fill of scale drawn into bitmap, next frame repaints span between it and new fill
+    private float mDrawnFillX = ScaleRenderer.NO_FILL;
+    //distance around fill which changes together with it: selected point and labels
+    private float mRepaintPad;
     private Integer mBackgroundColor;
     private Integer mSelectedColor;
     private Integer mSimpleColor;
 
     private float mSelectedTextSize = 40f;
     private float mSimpleTextSize = 30f;
-    private float mSelectedTextY;
     private float mSimpleTextY;
     private int mSimpleTextColor = 0x61000000;
 
-    private boolean mIsAnimationRunning = false;
+
+    private final DamageTracker mDamage = new DamageTracker();
+    private final Rect mClipBounds = new Rect();
 
     //we need it because world is imperfect and java's float computations too
     float mDelta = 0.01f;
-    float mRadiusDelta = 1f;
-
-    private int currentRate = INIT_STATE;
+    float mRadiusDelta = RateLayout.RADIUS_DELTA;
 
-    private PublishSubject<Integer> mRatedSubject = PublishSubject.create();
+    private final PublishSubject<Integer> mRatedSubject = PublishSubject.create();
+    private final PublishSubject<Integer> mCommittedSubject = PublishSubject.create();
+    //the last rate delivered as committed or bound without user, it is not delivered again
+    private int mCommittedRate = RateState.INIT_STATE;
     private PublishSubject<PointF> mClicksSubject = PublishSubject.create();
     private Disposable mClicksSubscription;
 
-    private RateWidget instant = this;
+    private final static long NO_TIME = -1;
+    //uptime of touch event which is being dispatched now
+    private long mDispatchedEventTime = NO_TIME;
+    //uptime of touch event which has changed rate but has not been drawn yet
+    private long mUndrawnInputTime = NO_TIME;
+    private long mLastInputLatency = NO_TIME;
+
+    //null unless metrics are enabled
+    private RateWidgetMetrics mMetrics;
+    private MetricsListener mMetricsListener;
+
+    private boolean mIsScrubEnabled = false;
+    private final MoveEventCoalescer mMoveCoalescer = new MoveEventCoalescer();
+    private final Choreographer.FrameCallback mScrubFrameCallback = frameTimeNanos -> applyScrub();
+
+    private boolean mIsPrewarmEnabled = true;
+    //base scale and bitmap being prepared in background since size became known
+    private Disposable mPrewarm;
+    //bitmap prepared in background, the first draw takes it
+    private Bitmap mPrewarmedBitmap;
+    private boolean mIsPrewarmedBitmapAllocated;
+    private long mAttachedNanos = NO_TIME;
+    private boolean mIsFirstFrameDrawn;
 
     public RateWidget(Context context) {
-        super(context);
+        this(context, (AttributeSet) null);
     }
 
     public RateWidget(Context context, @Nullable AttributeSet attrs) {
-        super(context, attrs);
-        initValues(attrs);
+        this(context, attrs, R.attr.rateWidgetStyle);
     }
 
     public RateWidget(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        initValues(attrs);
+        // widgets of the same style share resolved values, see RateWidgetStyle
+        initValues(RateWidgetStyle.obtain(context, attrs, defStyleAttr));
+    }
+
+    /**
+     * Widget of style resolved elsewhere, e.g. with colors a theme does not have
+     */
+    RateWidget(Context context, RateWidgetStyle style) {
+        super(context);
+        initValues(style);
     }
 
     @Override
@@ -102,19 +214,94 @@ public class RateWidget extends View {
         SavedState savedState = (SavedState)state;
         super.onRestoreInstanceState(savedState.getSuperState());
 
-        currentRate = savedState.stateToSave;
+        mState.restore(savedState.stateToSave);
     }
 
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
         mClicksSubscription = subscribeToClicks(mClicksSubject.hide());
+        updateFrameInterval();
+        mAttachedNanos = System.nanoTime();
+        mIsFirstFrameDrawn = false;
+        if (mBitmap == null && getWidth() > 0 && getHeight() > 0){
+            // re-attached view keeps its size, onSizeChanged will not come
+            prewarm();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        // wrap_content height is the lowest one which fits selected point and its label
+        int minHeight = Math.max(getSuggestedMinimumHeight(), RateLayout.getMinHeight(mInnerPointRadius, mSelectedTextSize));
+        setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                resolveSize(minHeight, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (mBitmap != null){
+            resizeBitmap(w, h);
+        }
+        if (mBitmap == null && w > 0 && h > 0){
+            prewarm();
+        }
+    }
+
+    /**
+     * Fit backing bitmap to new view size. Scale is drawn into the top left part of bitmap, so bitmap
+     * large enough for the new size is kept, and a bigger one is taken from pool only when view outgrows it.
+     * Bigger bitmap has headroom, so window dragged wider allocates a few times rather than every frame.
+     * Bitmap is not reconfigured in place: display list of the view and mCanvas still use it.
+     */
+    private void resizeBitmap(int width, int height){
+        if (mLayers != null && mLayers.isRunning()){
+            // layer is placed for the old size
+            cancelAnimation();
+        }
+        Bitmap.Config config = mBitmap.getConfig();
+        if (width <= 0 || height <= 0 || config != getBitmapConfig()){
+            releaseBitmap();
+            return;
+        }
+        if (width > mBitmap.getWidth() || height > mBitmap.getHeight()){
+            int grownWidth = grow(mBitmap.getWidth(), width);
+            int grownHeight = grow(mBitmap.getHeight(), height);
+            BitmapPool.getShared().release(mBitmap);
+            mBitmap = obtainBitmap(grownWidth, grownHeight, config);
+            mCanvas = new Canvas(mBitmap);
+            mBitmapScaleCanvas.setCanvas(mCanvas);
+        }
+        prepareLayout();
+        // size may change every frame while window is dragged, so base scale of every
+        // intermediate size is not rendered and cached, scale is drawn as it is instead
+        mCanvas.save();
+        mCanvas.clipRect(0, 0, width, height);
+        // opaque bitmap carries background color, scale of the old size is erased either way
+        mCanvas.drawColor(config == Bitmap.Config.RGB_565 ? mBackgroundColor : Color.TRANSPARENT, PorterDuff.Mode.SRC);
+        mCanvas.restore();
+        mDrawnFillX = ScaleRenderer.fillXAt(mLayout, mDriver.getPosition());
+        mRenderer.draw(mBitmapScaleCanvas, mDrawnFillX, mDriver.getSelected());
+        mDamage.reset();
+    }
+
+    /**
+     * @return size of bitmap side which fits requested one, growing by half at least
+     */
+    private static int grow(int size, int requested){
+        return requested <= size ? size : Math.max(requested, size + size / 2);
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         mClicksSubscription.dispose();
+        Choreographer.getInstance().removeFrameCallback(mScrubFrameCallback);
+        mMoveCoalescer.cancel();
+        cancelPrewarm();
+        releaseBitmap();
+        cancelAnimation();
     }
 
     @Override
@@ -122,44 +309,31 @@ public class RateWidget extends View {
         Parcelable superState = super.onSaveInstanceState();
         SavedState savedState = new SavedState(superState);
 
-        savedState.stateToSave = currentRate;
+        savedState.stateToSave = mState.getCurrentRate();
         return savedState;
     }
 
-    private void initValues(AttributeSet attrs){
-        if (attrs != null){
-            String color = attrs.getAttributeValue(null, CustomAttributes.SELECTED_COLOR);
-            if (color != null) {
-                mSelectedColor = (int) Long.parseLong(color.substring(1), 16);
-            }
-
-            color = attrs.getAttributeValue(null, CustomAttributes.SIMPLE_COLOR);
-            mSimpleColor = color != null ? (int) Long.parseLong(color.substring(1), 16) : 0xFFD8D8D8;
-
-            color = attrs.getAttributeValue(null, CustomAttributes.BACKGROUND_COLOR);
-            mBackgroundColor = color != null ? (int) Long.parseLong(color.substring(1), 16) : 0xFFFFFFFF;
-
-            mPointNumber = attrs.getAttributeIntValue(null, CustomAttributes.MAX_VALUE, 10) + 1;
-        }
+    private void initValues(RateWidgetStyle style){
+        mSelectedColor = style.selectedColor;
+        mSimpleColor = style.simpleColor;
+        mBackgroundColor = style.backgroundColor;
+        mPointNumber = style.maxValue + 1;
+        mIsScrubEnabled = style.isScrubEnabled;
+        mRenderMode = style.renderMode;
+        mDrawMode = style.drawMode;
+        mAnimationMode = style.animationMode;
         initValues();
     }
 
     Canvas mCanvas;
     private void initValues() {
         mInnerPointRadius = 8;
-        initElementsValues();
-        mPointNumber = 5;
 
         mPaint = new Paint();
         mPaint.setAntiAlias(true);
         mPaint.setDither(true);
-    }
-
-    private void initElementsValues(){
-        mLineStrokeWidth = mInnerPointRadius;
-        mOuterPointRadius = (mInnerPointRadius << 1);
-        mDeltedOuterPointRadius = mOuterPointRadius + mRadiusDelta;
-        mSelectedPointRadius = (mOuterPointRadius << 1);
+        mBitmapScaleCanvas = new AndroidScaleCanvas(mPaint);
+        mViewScaleCanvas = new AndroidScaleCanvas(mPaint);
     }
 
 
@@ -168,149 +342,448 @@ public class RateWidget extends View {
      * selected and simple text are on one line by horizontal line
      */
     private void calculateTextCoordinates(){
-        Rect bounds = new Rect();
-        float selectedMedian, simpleMedian;
-        mPaint.setTextSize(mSimpleTextSize);
-        mPaint.getTextBounds("0", 0, 1, bounds);
-        simpleMedian = bounds.exactCenterY();
-        mPaint.setTextSize(mSelectedTextSize);
-        mPaint.getTextBounds("0", 0, 1, bounds);
-        selectedMedian = bounds.exactCenterY();
-        mSimpleTextY = mSelectedTextY - abs(simpleMedian - selectedMedian);
+        float simpleMedian = mLabelCache.getDigitCenterY(false);
+        float selectedMedian = mLabelCache.getDigitCenterY(true);
+        mSimpleTextY = mLayout.getSelectedTextY() - abs(simpleMedian - selectedMedian);
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
+        if (mUndrawnInputTime != NO_TIME){
+            mLastInputLatency = SystemClock.uptimeMillis() - mUndrawnInputTime;
+            mUndrawnInputTime = NO_TIME;
+            if (mMetrics != null){
+                mMetrics.onTapDrawn(TimeUnit.MILLISECONDS.toNanos(mLastInputLatency));
+            }
+        }
+        if (mDrawMode == DRAW_MODE_DIRECT){
+            if (mMetrics == null){
+                drawDirect(canvas);
+                return;
+            }
+            long start = System.nanoTime();
+            drawDirect(canvas);
+            long end = System.nanoTime();
+            if (mDriver.isRunning()){
+                mMetrics.onAnimationFrame(end, end - start);
+            } else {
+                mMetrics.onDraw(end - start);
+            }
+            return;
+        }
         if (mBitmap == null){
+            long start = System.nanoTime();
+            if (mPrewarm != null){
+                // base scale is still being rendered in background, so this frame draws scale
+                // as it is and prewarmed bitmap is swapped in by the frame after it
+                if (getBitmapConfig() == Bitmap.Config.RGB_565){
+                    // opaque bitmap carries background color
+                    canvas.drawColor(mBackgroundColor);
+                }
+                drawDirect(canvas);
+                onFirstFrame(start);
+                return;
+            }
             mBitmap = getInitialBitmap();
+            onFirstFrame(start);
+        }
+        // Software canvas is clipped by invalidated area, so we blit only damaged part of bitmap.
+        // Hardware canvas reports whole view here and gets the whole bitmap as before.
+        // Bitmap may be larger than view after resize, only its top left part holds the scale.
+        if (canvas.getClipBounds(mClipBounds) && mClipBounds.intersect(0, 0,
+                Math.min(getWidth(), mBitmap.getWidth()), Math.min(getHeight(), mBitmap.getHeight()))){
+            // no paint: color left in mPaint by the last shape would make bitmap translucent
+            canvas.drawBitmap(mBitmap, mClipBounds, mClipBounds, null);
+        }
+    }
+
+    private void drawDirect(Canvas canvas){
+        prepareLayout();
+        mViewScaleCanvas.setCanvas(canvas);
+        float fillX = ScaleRenderer.fillXAt(mLayout, mDriver.getPosition());
+        if (canvas.getClipBounds(mClipBounds)){
+            mRenderer.draw(mViewScaleCanvas, fillX, mDriver.getSelected(), mClipBounds.left, mClipBounds.right);
+        } else {
+            mRenderer.draw(mViewScaleCanvas, fillX, mDriver.getSelected());
+        }
+        mViewScaleCanvas.setCanvas(null);
+    }
+
+    /**
+     * Invalidate only area touched since previous call
+     */
+    private void invalidateDamage(){
+        if (mDamage.isEmpty()){
+            return;
         }
-        canvas.drawBitmap(mBitmap, 0, 0, mPaint);
+        invalidate(mDamage.getLeft(), mDamage.getTop(), mDamage.getRight(), mDamage.getBottom());
+        mDamage.reset();
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        if(event.getAction() == MotionEvent.ACTION_DOWN) {
-            mClicksSubject.onNext(new PointF(event.getX(), event.getY()));
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                // click is handled synchronously, so we know which event has changed the rate
+                mDispatchedEventTime = event.getEventTime();
+                mClicksSubject.onNext(new PointF(event.getX(), event.getY()));
+                mDispatchedEventTime = NO_TIME;
+                if (mIsScrubEnabled) {
+                    // we have to take the gesture so as to receive moves
+                    return true;
+                }
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (mIsScrubEnabled) {
+                    ViewParent parent = getParent();
+                    if (parent != null) {
+                        parent.requestDisallowInterceptTouchEvent(true);
+                    }
+                    // Moves may come several times per frame, so only the last one
+                    // is resolved when next frame starts
+                    if (mMoveCoalescer.offer(event.getX())) {
+                        Choreographer.getInstance().postFrameCallback(mScrubFrameCallback);
+                    }
+                    return true;
+                }
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                if (mMoveCoalescer.hasPending()) {
+                    Choreographer.getInstance().removeFrameCallback(mScrubFrameCallback);
+                    mMoveCoalescer.cancel();
+                }
+                break;
         }
         return super.onTouchEvent(event);
     }
 
+    private void applyScrub(){
+        float x = mMoveCoalescer.consume();
+        HitTestIndex index = getHitTestIndex();
+        if (index == null){
+            return;
+        }
+        int i = index.nearestIndex(x);
+        if (i != HitTestIndex.NO_POINT && i != mState.getCurrentRate()){
+            selectRate(i);
+            mMoveCoalescer.onApplied();
+        }
+    }
+
+
+    /**
+     * Make sure layout and renderer match current size and colors
+     */
+    private void prepareLayout(){
+        if (mLayout == null || !mLayout.matches(getWidth(), getHeight(), mPointNumber, mInnerPointRadius)){
+            mLayout = RateLayout.obtain(getWidth(), getHeight(), mPointNumber, mInnerPointRadius);
+            mLabels = RateLabels.obtain(mPointNumber);
+            if (mLabelCache == null || !mLabelCache.matches(mPointNumber, mSelectedTextSize, mSimpleTextSize)){
+                mLabelCache = LabelCache.obtain(mPointNumber, mSelectedTextSize, mSimpleTextSize);
+                mBitmapScaleCanvas.setLabels(mLabelCache);
+                mViewScaleCanvas.setLabels(mLabelCache);
+            }
+            calculateTextCoordinates();
+            // the last label is the widest one
+            float labelHalfWidth = mLabelCache.measure(mPointNumber - 1, true) / 2;
+            mRepaintPad = Math.max(mLayout.getSelectedPointRadius(), labelHalfWidth) + 2 * mRadiusDelta;
+        }
+        if (mRenderer == null
+                || !mRenderer.isBuiltFor(mLayout, mSelectedColor, mSimpleColor, mBackgroundColor, mSimpleTextY)){
+            mRenderer = new ScaleRenderer(mLayout, mLabels, mSelectedColor, mSimpleColor,
+                    mBackgroundColor, mSimpleTextColor, mSimpleTextY);
+        }
+    }
 
     /**
      * Create default line and init some values
      * @return default line
      */
     private Bitmap getInitialBitmap(){
-        mLineCoordinateY = ((float)getHeight() - (mSelectedPointRadius << 1) + ((mSelectedPointRadius >> 1) >> 1));
-        //Do u not like bits operations? U just don't know how to cook it!
-        mSelectedTextY = mLineCoordinateY - (mSelectedPointRadius << 1) + (mSelectedPointRadius >> 1);
-        calculateTextCoordinates();
+        Trace.beginSection("RateWidget.initialBitmap");
+        try {
+            prepareLayout();
+            Bitmap.Config config = getBitmapConfig();
+            Bitmap bitmap = takePrewarmedBitmap(config);
+            if (bitmap == null){
+                bitmap = obtainBitmap(getWidth(), getHeight(), config);
+            }
+
+            mCanvas = new Canvas(bitmap);
+            mBitmapScaleCanvas.setCanvas(mCanvas);
+            // base scale replaces every pixel, so pooled bitmap needs no clearing
+            composeBitmap(bitmap, 0, mLayout.getWidth());
+            // whole view is going to be drawn anyway
+            mDamage.reset();
 
-        Bitmap bitmap = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
-        if (mSelectedColor == null){
-            mSelectedColor = getDefaultColorSelected();
+            return bitmap;
+        } finally {
+            Trace.endSection();
         }
+    }
 
-        mCanvas = new Canvas(bitmap);
-        mPaint.setColor(mSimpleColor);
-        mPaint.setStrokeWidth(mLineStrokeWidth);
-        int offset = mSelectedPointRadius;
-        mCanvas.drawLine(
-                (float) offset,
-                mLineCoordinateY,
-                (float) (getWidth() - offset),
-                mLineCoordinateY,
-                mPaint);
+    /**
+     * @return bitmap from shared pool, allocation is counted by metrics
+     */
+    private Bitmap obtainBitmap(int width, int height, Bitmap.Config config){
+        BitmapPool pool = BitmapPool.getShared();
+        long missCount = pool.getMissCount();
+        Bitmap bitmap = pool.obtain(width, height, config);
+        if (mMetrics != null && pool.getMissCount() != missCount){
+            mMetrics.onBitmapAllocated(bitmap.getAllocationByteCount());
+        }
+        return bitmap;
+    }
 
-        float step = (getWidth() - (offset << 1)) / (mPointNumber - 1);
-        int currentX = offset;
+    /**
+     * Resolve colors and layout now and render base scale and take bitmap in background,
+     * so the first draw only composes bitmap from cached base scale and draws labels
+     */
+    private void prewarm(){
+        cancelPrewarm();
+        if (!mIsPrewarmEnabled || mDrawMode != DRAW_MODE_CACHED){
+            return;
+        }
+        Trace.beginSection("RateWidget.prewarmLayout");
+        try {
+            prepareLayout();
+        } finally {
+            Trace.endSection();
+        }
+        ScaleRenderer renderer = mRenderer;
+        Bitmap.Config config = getBitmapConfig();
+        int width = getWidth();
+        int height = getHeight();
+        mPrewarm = Single.fromCallable(() -> {
+                    Trace.beginSection("RateWidget.prewarm");
+                    try {
+                        BaseScaleCache.getShared().obtain(renderer, config);
+                        BitmapPool pool = BitmapPool.getShared();
+                        long missCount = pool.getMissCount();
+                        Bitmap bitmap = pool.obtain(width, height, config);
+                        return Pair.create(bitmap, pool.getMissCount() != missCount);
+                    } finally {
+                        Trace.endSection();
+                    }
+                })
+                .subscribeOn(Schedulers.computation())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(prewarmed -> {
+                    mPrewarm = null;
+                    // bitmap is handed over on main thread, so draw sees either nothing or all of it
+                    mPrewarmedBitmap = prewarmed.first;
+                    mIsPrewarmedBitmapAllocated = prewarmed.second;
+                    invalidate();
+                }, error -> {
+                    mPrewarm = null;
+                    Log.w(TAG, "Could not prewarm scale, it is drawn on main thread", error);
+                    invalidate();
+                });
+    }
 
-        for (int i = 0; i < mPointNumber; ++i, currentX += step){
-            mPointsCenters.add(currentX);
-            mPaint.setColor(mSimpleColor);
-            mCanvas.drawCircle((float)currentX, mLineCoordinateY, mOuterPointRadius, mPaint);
-            mPaint.setColor(mBackgroundColor);
-            mCanvas.drawCircle((float)currentX, mLineCoordinateY, mInnerPointRadius, mPaint);
+    private void cancelPrewarm(){
+        if (mPrewarm != null){
+            mPrewarm.dispose();
+            mPrewarm = null;
         }
+        if (mPrewarmedBitmap != null){
+            BitmapPool.getShared().release(mPrewarmedBitmap);
+            mPrewarmedBitmap = null;
+        }
+    }
 
-        drawRateText(0, false, mCanvas);
-        drawRateText(mPointNumber - 1, false, mCanvas);
+    /**
+     * @return bitmap prepared by {@link #prewarm()} if it still fits the view
+     */
+    private Bitmap takePrewarmedBitmap(Bitmap.Config config){
+        Bitmap bitmap = mPrewarmedBitmap;
+        if (bitmap == null){
+            return null;
+        }
+        mPrewarmedBitmap = null;
+        if (bitmap.getWidth() != getWidth() || bitmap.getHeight() != getHeight() || bitmap.getConfig() != config){
+            BitmapPool.getShared().release(bitmap);
+            return null;
+        }
+        if (mMetrics != null && mIsPrewarmedBitmapAllocated){
+            mMetrics.onBitmapAllocated(bitmap.getAllocationByteCount());
+        }
+        return bitmap;
+    }
 
-        if (isRated()){
-            restoreBitmapState();
+    private void onFirstFrame(long drawStartNanos){
+        if (mIsFirstFrameDrawn || mAttachedNanos == NO_TIME){
+            return;
         }
+        mIsFirstFrameDrawn = true;
+        if (mMetrics != null){
+            long now = System.nanoTime();
+            mMetrics.onFirstFrame(now - mAttachedNanos, now - drawStartNanos);
+        }
+    }
 
-        return bitmap;
+    private Bitmap.Config getBitmapConfig(){
+        return getBitmapConfig(mRenderMode, mBackgroundColor, mSelectedColor, mSimpleColor);
     }
 
-    private void restoreBitmapState(){
-        int offset = mSelectedPointRadius;
-        mPaint.setColor(mSelectedColor);
-        mCanvas.drawLine(
-                (float) offset,
-                mLineCoordinateY,
-                (float) (mPointsCenters.get(currentRate)),
-                mLineCoordinateY,
-                mPaint);
-        for (int i = 0; i < currentRate; ++i){
-            mCanvas.drawCircle((float)(mPointsCenters.get(i)), mLineCoordinateY, mOuterPointRadius, mPaint);
+    /**
+     * @return RGB_565 in low memory mode when all colors are opaque, ARGB_8888 otherwise
+     */
+    static Bitmap.Config getBitmapConfig(int renderMode, int backgroundColor, int selectedColor, int simpleColor){
+        if (renderMode == RENDER_MODE_LOW_MEMORY
+                && isOpaque(backgroundColor) && isOpaque(selectedColor) && isOpaque(simpleColor)){
+            return Bitmap.Config.RGB_565;
         }
-        mCanvas.drawCircle((float)(mPointsCenters.get(currentRate)), mLineCoordinateY, mSelectedPointRadius, mPaint);
-        clearPointTextArea(currentRate);
-        drawRateText(currentRate, true, mCanvas);
+        return Bitmap.Config.ARGB_8888;
+    }
+
+    private static boolean isOpaque(int color){
+        return Color.alpha(color) == 0xFF;
     }
 
     private void initStartPoint(){
-        clearPointTextArea(0);
-        float currentPointCoordinate = mPointsCenters.get(0);
-        mPaint.setColor(mSelectedColor);
-        mCanvas.drawCircle(currentPointCoordinate, mLineCoordinateY, mSelectedPointRadius, mPaint);
+        if (mDrawMode == DRAW_MODE_DIRECT || mBitmap == null){
+            invalidate();
+            return;
+        }
+        repaintBitmap();
+    }
 
-        drawRateText(0, true, mCanvas);
-        this.invalidate();
+    /**
+     * Repaint part of bitmap between previously drawn fill and the current one
+     */
+    private void repaintBitmap(){
+        float fillX = ScaleRenderer.fillXAt(mLayout, mDriver.getPosition());
+        float from = Math.min(fillX, mDrawnFillX);
+        float to = Math.max(fillX, mDrawnFillX);
+        int width = mLayout.getWidth();
+        int height = mLayout.getHeight();
+        int left = from == ScaleRenderer.NO_FILL ? 0 : Math.max(0, (int) (from - mRepaintPad));
+        int right = Math.min(width, (int) Math.ceil(to + mRepaintPad));
+
+        // scale is redrawn from state within span, so it is right whatever has been drawn before
+        composeBitmap(mBitmap, left, right);
+
+        mDamage.add(left, 0, right, height);
+        invalidateDamage();
     }
 
-    private void clearPointTextArea(int pointNumber){
-        mPaint.setTextSize(mSelectedTextSize);
-        mPaint.getTextBounds(Integer.toString(pointNumber), 0, Integer.toString(pointNumber).length(), mBounds);
-        mPaint.setColor(mBackgroundColor);
-        float x = mPointsCenters.get(pointNumber);
-        mCanvas.drawRect(x - mBounds.exactCenterX() - mRadiusDelta,
-                mSelectedTextY - mBounds.height() - mRadiusDelta,
-                x + mBounds.exactCenterX() + mRadiusDelta,
-                mSelectedTextY + mRadiusDelta, mPaint);
+    /**
+     * Compose scale at current driver position within [left, right) of the view part of bitmap:
+     * cached base scale is copied and only the point under fill edge and labels are drawn
+     */
+    private void composeBitmap(Bitmap bitmap, int left, int right){
+        composeBitmap(bitmap, left, right, ScaleRenderer.fillXAt(mLayout, mDriver.getPosition()), mDriver.getSelected());
     }
 
-    private void drawRateText(int rate, boolean selected, Canvas canvas){
-        String text = Integer.toString(rate + 1);
-        mPaint.setColor(selected ? mSelectedColor : mSimpleTextColor);
-        mPaint.setTextSize(selected ? mSelectedTextSize : mSimpleTextSize);
-        mPaint.setTypeface(Typeface.create(Typeface.DEFAULT, selected ? Typeface.BOLD : Typeface.NORMAL));
-        canvas.drawText(text, getCenteredTextCoordinateX(text, mPaint, mPointsCenters.get(rate)), selected ? mSelectedTextY : mSimpleTextY, mPaint);
+    private void composeBitmap(Bitmap bitmap, int left, int right, float fillX, int selected){
+        Bitmap.Config config = bitmap.getConfig();
+        if (mBaseScale == null || !mBaseScale.isBuiltFor(mRenderer, config)){
+            mBaseScale = BaseScaleCache.getShared().obtain(mRenderer, config);
+        }
+        mCanvas.save();
+        mCanvas.clipRect(left, 0, right, mLayout.getHeight());
+        mBaseScale.compose(mCanvas, fillX);
+        mRenderer.drawFillEdge(mBitmapScaleCanvas, fillX);
+        mRenderer.drawOverlay(mBitmapScaleCanvas, selected);
+        mCanvas.restore();
+        mDrawnFillX = fillX;
     }
 
-    public void drawRate(int startRate, int targetRate){
-        if (startRate == targetRate){
+    private void onAnimationFrame(long frameTimeNanos){
+        long start = mMetrics != null ? System.nanoTime() : 0;
+        if (!canAnimate()){
+            mDriver.finish();
+            onAnimationSettled();
             return;
         }
-        ValueAnimator animator = ValueAnimator.ofFloat(0, 1);
-        animator.setDuration((long)((log(abs(targetRate - startRate)) + 4) * 80));
-        animator.setInterpolator(new AccelerateInterpolator());
-        animator.addUpdateListener(new CustomValueAnimatorListener(startRate, targetRate));
-        animator.start();
-        mIsAnimationRunning = true;
-
-        animator.addListener(new AnimatorListenerStub() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                mIsAnimationRunning = false;
-                // If user has picked another rate while animator was working
-                // we should run animation once again
-                if (currentRate != targetRate){
-                    drawRate(targetRate, currentRate);
-                }
+        boolean isRunning = mDriver.onFrame(frameTimeNanos);
+        if (mDrawMode == DRAW_MODE_DIRECT){
+            // direct frame is measured in onDraw
+            invalidate();
+        } else {
+            repaintBitmap();
+            if (mMetrics != null){
+                long end = System.nanoTime();
+                mMetrics.onAnimationFrame(end, end - start);
             }
-        });
+        }
+        if (isRunning){
+            Choreographer.getInstance().postFrameCallback(mAnimationFrameCallback);
+        } else {
+            onAnimationSettled();
+        }
+    }
+
+    /**
+     * Start the leg of driver on layer, bitmap keeps the fill which both ends of leg share
+     *
+     * @return false if layer can't be used now, so frame animation has to run
+     */
+    private boolean startLayerAnimation(){
+        if (mAnimationMode != ANIMATION_MODE_LAYER || mDrawMode != DRAW_MODE_CACHED
+                || mBitmap == null || !ScaleLayers.isSupported(this)){
+            return false;
+        }
+        if (mLayers == null){
+            mLayers = new ScaleLayers(this);
+        }
+        float fromX = ScaleRenderer.fillXAt(mLayout, mDriver.getPosition());
+        float toX = ScaleRenderer.fillX(mLayout, mDriver.getTarget());
+        // no selected point while fill moves, as frame animation draws it
+        composeBitmap(mBitmap, 0, mLayout.getWidth(), Math.min(fromX, toX), RateState.INIT_STATE);
+        invalidate();
+        // if layer fails, frame animation repaints bitmap from the fill drawn just now
+        return mLayers.start(mBaseScale, mLayout.getLineY(), fromX, toX,
+                TimeUnit.NANOSECONDS.toMillis(mDriver.getLegDurationNanos()), this::onLayerAnimationEnd);
+    }
+
+    private void onLayerAnimationEnd(){
+        mDriver.finish();
+        repaintBitmap();
+        onAnimationSettled();
+    }
+
+    private void onAnimationSettled(){
+        onAnimationMetricsEnd();
+        commitRate(mState.getCurrentRate());
+    }
+
+    private void commitRate(int rate){
+        if (rate != mCommittedRate){
+            mCommittedRate = rate;
+            mCommittedSubject.onNext(rate);
+        }
+    }
+
+    private void onAnimationMetricsEnd(){
+        if (mMetrics != null){
+            mMetrics.onAnimationEnd(System.nanoTime());
+            if (mMetricsListener != null){
+                mMetricsListener.onAnimationMetrics(mMetrics);
+            }
+        }
+    }
+
+    /**
+     * @return true while fill is revealed on layer rather than drawn frame by frame
+     */
+    boolean isLayerAnimationRunning(){
+        return mLayers != null && mLayers.isRunning();
+    }
+
+    /**
+     * @return layout of the last drawn size, null before the first draw
+     */
+    RateLayout getRateLayout(){
+        return mLayout;
+    }
+
+    /**
+     * @return true if there is something to animate: bitmap in cached mode or layout in direct one
+     */
+    private boolean canAnimate(){
+        return mDrawMode == DRAW_MODE_DIRECT ? mLayout != null : mBitmap != null;
     }
 
     /**
@@ -332,179 +805,350 @@ public class RateWidget extends View {
         return getBackgroundWindowColor();
     }
 
-    public PublishSubject<Integer> getRatedSubject(){
-        return mRatedSubject;
+    /**
+     * @return every picked rate index, duplicates included
+     */
+    public Observable<Integer> getRatedSubject(){
+        return mRatedSubject.hide();
     }
 
-    private int getBackgroundWindowColor(){
-        return getColorFromDefaultStyle(android.R.attr.windowBackground);
+    /**
+     * Picked rate indices delivered with given strategy. Stream keeps only the latest rate
+     * when subscriber can't keep up, so it is safe to do slow work per rate downstream.
+     *
+     * @param delivery one of RATE_DELIVERY_* constants
+     */
+    public Flowable<Integer> getRateStream(int delivery){
+        return getRateStream(delivery, DEFAULT_SAMPLE_PERIOD_MILLIS);
     }
 
-    private int getDefaultColorSelected(){
+    /**
+     * @param samplePeriodMillis period of {@link #RATE_DELIVERY_SAMPLED} delivery, ignored by others
+     */
+    public Flowable<Integer> getRateStream(int delivery, long samplePeriodMillis){
+        Observable<Integer> rates;
+        switch (delivery){
+            case RATE_DELIVERY_LATEST:
+                rates = mRatedSubject;
+                break;
+            case RATE_DELIVERY_DISTINCT:
+                rates = mRatedSubject.distinctUntilChanged();
+                break;
+            case RATE_DELIVERY_SAMPLED:
+                rates = mRatedSubject.sample(samplePeriodMillis, TimeUnit.MILLISECONDS);
+                break;
+            case RATE_DELIVERY_COMMITTED:
+                // repeats are skipped by commitRate, so rebinding the widget resets them as well
+                rates = mCommittedSubject;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown rate delivery: " + delivery);
+        }
+        return rates.toFlowable(BackpressureStrategy.LATEST);
+    }
 
-        return android.os.Build.VERSION.SDK_INT >= 21 ?
-                getColorFromDefaultStyle(android.R.attr.colorPrimary) :
-                DEFAULT_COLOR_SELECTED;
+    private int getBackgroundWindowColor(){
+        return getColorFromDefaultStyle(android.R.attr.windowBackground);
     }
 
     private int getColorFromDefaultStyle(int attr) {
+        return getColorFromDefaultStyle(getContext(), attr);
+    }
+
+    private static int getColorFromDefaultStyle(Context context, int attr) {
         int[] attrs = {attr};
-        TypedArray arr = getContext().obtainStyledAttributes(R.style.AppTheme, attrs);
+        TypedArray arr = context.obtainStyledAttributes(R.style.AppTheme, attrs);
         int color = arr.getColor(0, 0xFF000000);
         arr.recycle();
         return color;
     }
 
 
-    private Rect mBounds = new Rect();
+    public int getCurrentRate() {
+        return mState.getCurrentRate() + 1;
+    }
 
     /**
-     * Method center X coordinate of text by center
+     * Set max horizontal distance from point center which still selects the point.
      *
-     * @param text target text
-     * @param paint set paint
-     * @param center target center
-     * @return centered coordinate
+     * @param slop distance in pixels, negative value restores default one equal to selected point radius
      */
-    private float getCenteredTextCoordinateX(String text, Paint paint, float center){
-        paint.getTextBounds(text, 0, text.length(), mBounds);
-        return center - mBounds.exactCenterX();
+    public void setTouchSlop(float slop){
+        mTouchSlop = slop;
     }
 
-    public int getCurrentRate() {
-        return currentRate + 1;
+    /**
+     * Let user change rate by dragging finger along the scale.
+     * Rate is resolved at most once per display frame.
+     */
+    public void setScrubEnabled(boolean enabled){
+        mIsScrubEnabled = enabled;
     }
 
-    public boolean isRated(){
-        return currentRate != INIT_STATE;
+    public boolean isScrubEnabled(){
+        return mIsScrubEnabled;
     }
 
-    public void init(){
-        mBitmap = null;
-        currentRate = INIT_STATE;
+    /**
+     * @return counters of received, coalesced and applied move events of scrubbing
+     */
+    public MoveEventCoalescer getScrubStats(){
+        return mMoveCoalescer;
+    }
+
+    /**
+     * @param renderMode {@link #RENDER_MODE_DEFAULT} or {@link #RENDER_MODE_LOW_MEMORY}
+     */
+    public void setRenderMode(int renderMode){
+        if (mRenderMode == renderMode){
+            return;
+        }
+        mRenderMode = renderMode;
+        releaseBitmap();
         invalidate();
     }
 
-    public class CustomAttributes{
-        public final static String SELECTED_COLOR = "selected_color";
-        public final static String SIMPLE_COLOR = "simple_color";
-        public final static String BACKGROUND_COLOR = "background_color";
-        public final static String MAX_VALUE = "max_value";
+    public int getRenderMode(){
+        return mRenderMode;
     }
 
-    private class CustomValueAnimatorListener implements ValueAnimator.AnimatorUpdateListener{
-        // 1 -- forward | -1 -- backward
-        int directionCoef;
-        // coordinates of start and end points
-        int startX, endX;
-        int wayLength;
+    /**
+     * Set the highest rate, scale gets maxValue + 1 points. Scales with hundreds or thousands
+     * of points are fine, only some of points are drawn when they do not fit.
+     */
+    public void setMaxValue(int maxValue){
+        if (maxValue < 0){
+            throw new IllegalArgumentException("Max value should not be negative: " + maxValue);
+        }
+        if (mPointNumber == maxValue + 1){
+            return;
+        }
+        cancelAnimation();
+        mPointNumber = maxValue + 1;
+        if (mState.getCurrentRate() > maxValue){
+            mState.restore(maxValue);
+        }
+        releaseBitmap();
+        invalidate();
+    }
 
-        //prev animation value
-        float prevValue = 0f;
-        int currentPointDrawed = 0;
-        //just buffer variable
-        float currentPointCoordinate = 0f;
+    public int getMaxValue(){
+        return mPointNumber - 1;
+    }
 
-        int mainColor;
+    /**
+     * @param drawMode {@link #DRAW_MODE_CACHED} or {@link #DRAW_MODE_DIRECT}
+     */
+    public void setDrawMode(int drawMode){
+        if (mDrawMode == drawMode){
+            return;
+        }
+        cancelAnimation();
+        releaseBitmap();
+        mDrawMode = drawMode;
+        invalidate();
+    }
 
-        //just buffer variable
-        float currentStart;
+    public int getDrawMode(){
+        return mDrawMode;
+    }
 
-        String targetRateString;
+    /**
+     * @param animationMode {@link #ANIMATION_MODE_FRAME} or {@link #ANIMATION_MODE_LAYER}
+     */
+    public void setAnimationMode(int animationMode){
+        if (mAnimationMode == animationMode){
+            return;
+        }
+        cancelAnimation();
+        mAnimationMode = animationMode;
+    }
 
-        int startRate;
-        int targetRate;
+    public int getAnimationMode(){
+        return mAnimationMode;
+    }
 
-        public CustomValueAnimatorListener(int startRate, int targetRate){
-            this.startRate = startRate;
-            this.targetRate = targetRate;
-            startX = mPointsCenters.get(startRate);
-            endX = mPointsCenters.get(targetRate);
-            wayLength = abs(endX - startX);
-            directionCoef = (endX - startX) >= 0 ? 1 : -1;
-            mainColor = directionCoef == 1 ? mSelectedColor : mSimpleColor;
-            mPaint.setColor(mainColor);
-            targetRateString = Integer.toString(targetRate);
+    /**
+     * @return millis from the last tap which changed rate till the widget was drawn after it,
+     * or -1 if there was no such tap
+     */
+    public long getLastInputLatencyMillis(){
+        return mLastInputLatency;
+    }
 
-            clearCurrentSelectedPoint();
+    /**
+     * Render base scale in background as soon as size of widget is known, enabled by default.
+     * Until it is ready scale is drawn directly, so the first frame of screen is not held by it.
+     */
+    public void setPrewarmEnabled(boolean enabled){
+        mIsPrewarmEnabled = enabled;
+        if (!enabled){
+            cancelPrewarm();
         }
+    }
 
-        private void clearCurrentSelectedPoint(){
-            currentPointCoordinate = mPointsCenters.get(startRate);
-            mPaint.setColor(mBackgroundColor);
-            mCanvas.drawCircle(currentPointCoordinate, mLineCoordinateY, mSelectedPointRadius + mRadiusDelta, mPaint);
-            mPaint.setColor(mainColor);
-            mCanvas.drawLine(
-                    currentPointCoordinate + directionCoef * (mSelectedPointRadius + mRadiusDelta),
-                    mLineCoordinateY,
-                    currentPointCoordinate + (-1) * directionCoef * (startRate == 0 || startRate == (mPointNumber - 1) ? mOuterPointRadius : mSelectedPointRadius + mRadiusDelta),
-                    mLineCoordinateY, mPaint
-            );
+    public boolean isPrewarmEnabled(){
+        return mIsPrewarmEnabled;
+    }
+
+    /**
+     * Start or stop collecting performance metrics, collected values are dropped when disabled
+     */
+    public void setMetricsEnabled(boolean enabled){
+        if (!enabled){
+            mMetrics = null;
+        } else if (mMetrics == null){
+            mMetrics = new RateWidgetMetrics();
+            updateFrameInterval();
+        }
+    }
 
+    public boolean isMetricsEnabled(){
+        return mMetrics != null;
+    }
 
-            clearPointTextArea(startRate);
-            if (startRate == 0 || startRate == mPointNumber - 1){
-                drawRateText(startRate, false, mCanvas);
-            }
+    /**
+     * @return copy of collected metrics or null if they are disabled
+     */
+    @Nullable
+    public RateWidgetMetrics getMetricsSnapshot(){
+        return mMetrics != null ? mMetrics.snapshot() : null;
+    }
 
-            mPaint.setColor(mainColor);
+    /**
+     * Listener is called on main thread after every animation while metrics are enabled
+     */
+    public void setMetricsListener(@Nullable MetricsListener listener){
+        mMetricsListener = listener;
+    }
+
+    private void updateFrameInterval(){
+        Display display = getDisplay();
+        if (mMetrics != null && display != null){
+            mMetrics.setFrameIntervalNanos((long) (TimeUnit.SECONDS.toNanos(1) / display.getRefreshRate()));
         }
+    }
 
-        @Override
-        public void onAnimationUpdate(ValueAnimator animation) {
-            float currentValue = (float) (animation.getAnimatedValue());
-
-            currentStart = directionCoef * (prevValue - mDelta) * wayLength + startX;
-            mCanvas.drawLine(
-                    currentStart,
-                    mLineCoordinateY,
-                    directionCoef * (currentValue) * wayLength + startX ,
-                    mLineCoordinateY,
-                    mPaint
-            );
-
-            currentPointCoordinate = mPointsCenters.get(startRate + directionCoef * currentPointDrawed);
-            if (abs(currentStart - startX) - abs(currentPointCoordinate - startX) >= mSelectedPointRadius){
-                clearPointArea();
-                if (directionCoef == 1) {
-                    mCanvas.drawCircle(currentPointCoordinate, mLineCoordinateY, mDeltedOuterPointRadius, mPaint);
-                } else {
-                    mCanvas.drawCircle(currentPointCoordinate, mLineCoordinateY, mDeltedOuterPointRadius, mPaint);
-                    mPaint.setColor(mBackgroundColor);
-                    mCanvas.drawCircle(currentPointCoordinate, mLineCoordinateY, mInnerPointRadius, mPaint);
-                    mPaint.setColor(mainColor);
-                }
-                currentPointDrawed++;
-            }
+    public interface MetricsListener {
+        /**
+         * @param metrics live metrics of widget, use {@link RateWidgetMetrics#copyTo} or
+         *                {@link RateWidgetMetrics#snapshot()} to keep them after return
+         */
+        void onAnimationMetrics(RateWidgetMetrics metrics);
+    }
 
-            if ((1.0f - currentValue) < 0.01){
-                if (targetRate == 0 || targetRate == mPointNumber - 1){
-                    clearPointTextArea(targetRate);
-                }
-                mPaint.setColor(mSelectedColor);
-                mCanvas.drawCircle(currentPointCoordinate, mLineCoordinateY, mSelectedPointRadius, mPaint);
-                drawRateText(targetRate, true, mCanvas);
+    public boolean isRated(){
+        return mState.isRated();
+    }
+
+    public void init(){
+        cancelAnimation(false);
+        releaseBitmap();
+        mState.reset();
+        mCommittedRate = RateState.INIT_STATE;
+        invalidate();
+    }
+
+    /**
+     * Show rate of another item without animation, e.g. when widget is recycled in a list.
+     * Bitmap of widget is kept and recomposed from cached base scale, so nothing is allocated
+     * and only labels and the point under fill are drawn.
+     * @param rate rate to show or {@link #NOT_RATED}
+     */
+    public void bind(int rate){
+        if (rate != NOT_RATED && (rate < 0 || rate >= mPointNumber)){
+            throw new IllegalArgumentException("Rate should be in [0, " + (mPointNumber - 1) + "]: " + rate);
+        }
+        unbind();
+        if (rate == NOT_RATED){
+            mState.reset();
+        } else {
+            mState.restore(rate);
+        }
+        // rate of the new item is not a choice user has just made
+        mCommittedRate = mState.getCurrentRate();
+        mUndrawnInputTime = NO_TIME;
+        if (mBitmap != null){
+            if (mBitmap.getWidth() >= getWidth() && mBitmap.getHeight() >= getHeight()){
+                prepareLayout();
+                composeBitmap(mBitmap, 0, mLayout.getWidth());
+                mDamage.reset();
+            } else {
+                releaseBitmap();
             }
-            prevValue = currentValue;
+        }
+        invalidate();
+    }
 
-            instant.invalidate();
+    /**
+     * Stop animation and scrubbing of item shown, e.g. when widget is recycled in a list.
+     * Nothing is delivered as committed for the item left. Bitmap is kept for the next {@link #bind}.
+     */
+    public void unbind(){
+        cancelAnimation(false);
+        Choreographer.getInstance().removeFrameCallback(mScrubFrameCallback);
+        mMoveCoalescer.cancel();
+    }
+
+    /**
+     * Stop drawing into bitmap and give it back to pool, it will be rebuilt on next draw
+     */
+    private void releaseBitmap(){
+        Bitmap bitmap = mBitmap;
+        if (bitmap == null){
+            return;
         }
+        mBitmap = null;
+        mCanvas = null;
+        mBitmapScaleCanvas.setCanvas(null);
+        cancelAnimation();
+        BitmapPool.getShared().release(bitmap);
+    }
+
+    /**
+     * Stop animation at the current rate and commit it, scale is drawn settled next time
+     */
+    private void cancelAnimation(){
+        cancelAnimation(true);
+    }
 
-        private void clearPointArea(){
-            mPaint.setColor(mBackgroundColor);
-            mCanvas.drawRect(
-                    new Rect(
-                            (int)currentPointCoordinate - mOuterPointRadius,
-                            (int)mLineCoordinateY + mOuterPointRadius + (int)mRadiusDelta * 2,
-                            (int)currentPointCoordinate + mOuterPointRadius,
-                            (int)mLineCoordinateY - mOuterPointRadius - (int)mRadiusDelta * 2
-                    ),
-                    mPaint
-            );
-            mPaint.setColor(mainColor);
+    /**
+     * @param commit false if rate shown is going to be replaced without user, as bind does
+     */
+    private void cancelAnimation(boolean commit){
+        if (mDriver.isRunning()){
+            Choreographer.getInstance().removeFrameCallback(mAnimationFrameCallback);
+            if (mLayers != null){
+                mLayers.cancel();
+            }
+            mDriver.finish();
+            if (commit){
+                onAnimationSettled();
+            } else {
+                onAnimationMetricsEnd();
+            }
         }
     }
 
+    /**
+     * Names of attributes without namespace, as in selected_color="#ff00ff00".
+     * Attributes of app namespace (app:selected_color) are preferred, these ones are still read
+     * and win over style and theme, but not over the same attribute set in app namespace.
+     */
+    public class CustomAttributes{
+        public final static String SELECTED_COLOR = "selected_color";
+        public final static String SIMPLE_COLOR = "simple_color";
+        public final static String BACKGROUND_COLOR = "background_color";
+        public final static String MAX_VALUE = "max_value";
+        public final static String SCRUB_ENABLED = "scrub_enabled";
+        public final static String RENDER_MODE = "render_mode";
+
+        public final static String DRAW_MODE = "draw_mode";
+
+        public final static String RENDER_MODE_LOW_MEMORY = "low_memory";
+        public final static String DRAW_MODE_DIRECT = "direct";
+    }
+
     //stuff for saving state when activity recreated
     static class SavedState extends BaseSavedState {
         int stateToSave;
@@ -536,44 +1180,90 @@ public class RateWidget extends View {
                 };
     }
 
+    /**
+     * Clicks are resolved and applied on main thread within touch dispatch:
+     * index lookup is cheap and layout is touched by main thread only
+     */
     private Disposable subscribeToClicks(Observable<PointF> clicksObservable){
         return clicksObservable
-                .flatMap(pointF -> {
-                    for (int i = 0; i < mPointsCenters.size(); ++i) {
-                        if (abs(pointF.x - (float)mPointsCenters.get(i)) < mSelectedPointRadius) {
-                            return Observable.just(i);
-                        }
-                    }
-                    return Observable.empty();
-                })
-                .subscribeOn(Schedulers.computation())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(
-                        i -> {
-                            if (currentRate == RateWidget.INIT_STATE){
-                                currentRate = 0;
-                                initStartPoint();
-                            }
-                            // We run animation only if previous has been done
-                            // and just change variable otherwise
-                            if (!mIsAnimationRunning) {
-                                drawRate(currentRate, i);
-                            }
-                            currentRate = i;
-                            mRatedSubject.onNext(i);
-                        }
-                );
-    }
-
-    private abstract class AnimatorListenerStub implements Animator.AnimatorListener{
+                .map(pointF -> findPointIndex(pointF.x))
+                .filter(i -> i != HitTestIndex.NO_POINT)
+                .subscribe(this::selectRate);
+    }
 
-        @Override
-        public void onAnimationStart(Animator animation) { }
+    private void selectRate(int i){
+        if (mDispatchedEventTime != NO_TIME && mMetrics != null){
+            mMetrics.onTapSelected(TimeUnit.MILLISECONDS.toNanos(SystemClock.uptimeMillis() - mDispatchedEventTime));
+        }
+        boolean changed = false;
+        if (!mState.isRated()){
+            mState.restore(0);
+            initStartPoint();
+            changed = true;
+        }
+        if (mLayers != null && mLayers.isRunning()){
+            // reveal can't be retargeted, so running leg jumps to its end and the next one starts from rest.
+            // Its target is not committed, rate is committed when the last leg settles.
+            mLayers.cancel();
+            mDriver.finish();
+            repaintBitmap();
+            onAnimationMetricsEnd();
+        }
+        // Running animation is retargeted from where it is,
+        // frames are scheduled only when it starts from rest
+        boolean wasRunning = mDriver.isRunning();
+        int previousTarget = mDriver.getTarget();
+        long now = System.nanoTime();
+        if (mDriver.select(i, now)) {
+            changed = true;
+            if (canAnimate()){
+                if (mMetrics != null){
+                    mMetrics.onAnimationStart(mDriver.getLegDurationNanos(), now);
+                }
+                if (!startLayerAnimation()){
+                    Choreographer.getInstance().postFrameCallback(mAnimationFrameCallback);
+                }
+            } else {
+                mDriver.finish();
+            }
+        } else if (wasRunning && mMetrics != null && previousTarget != i){
+            mMetrics.onAnimationRetarget(mDriver.getLegDurationNanos(), now);
+        }
+        // tap on the rate already selected draws nothing, so the next draw is not its latency
+        if (changed && mDispatchedEventTime != NO_TIME && mUndrawnInputTime == NO_TIME){
+            mUndrawnInputTime = mDispatchedEventTime;
+        }
+        mRatedSubject.onNext(i);
+        if (!mState.isAnimationRunning()){
+            // nothing to animate, so rate is shown right away
+            commitRate(i);
+        }
+    }
 
-        @Override
-        public void onAnimationCancel(Animator animation) { }
+    /**
+     * @return index of point under x coordinate or {@link HitTestIndex#NO_POINT}
+     */
+    private int findPointIndex(float x){
+        HitTestIndex index = getHitTestIndex();
+        return index != null ? index.indexAt(x) : HitTestIndex.NO_POINT;
+    }
 
-        @Override
-        public void onAnimationRepeat(Animator animation) { }
+    /**
+     * @return index for current layout or null if widget has not been drawn yet
+     */
+    @Nullable
+    private HitTestIndex getHitTestIndex(){
+        RateLayout layout = mLayout;
+        if (layout == null){
+            return null;
+        }
+        float slop = mTouchSlop >= 0 ? mTouchSlop : layout.getSelectedPointRadius();
+        HitTestIndex index = mHitTestIndex;
+        if (index == null || !index.isBuiltFor(layout.getPointCenters(), slop)){
+            index = new HitTestIndex(layout.getPointCenters(), slop);
+            mHitTestIndex = index;
+        }
+        return index;
     }
+
 }
@@ -0,0 +1,222 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.os.Build;
+import android.util.AttributeSet;
+import android.util.LongSparseArray;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Look of {@link RateWidget} resolved from its attributes, style and theme.
+ *
+ * Resolved styles are immutable and cached per theme, so widgets of one theme and style
+ * which have no attributes of their own share one instance and do not touch resources after the first one.
+ * Attributes set right on a widget are resolved for every widget, with one obtainStyledAttributes.
+ *
+ * Attributes without namespace (selected_color="#ff00ff00"), which widget used to read, still work:
+ * they win over style and theme, but not over the same attribute set on widget in app namespace.
+ */
+final class RateWidgetStyle {
+
+    private final static String[] LEGACY_NAMES = {
+            RateWidget.CustomAttributes.SELECTED_COLOR,
+            RateWidget.CustomAttributes.SIMPLE_COLOR,
+            RateWidget.CustomAttributes.BACKGROUND_COLOR,
+            RateWidget.CustomAttributes.MAX_VALUE,
+            RateWidget.CustomAttributes.SCRUB_ENABLED,
+            RateWidget.CustomAttributes.RENDER_MODE,
+            RateWidget.CustomAttributes.DRAW_MODE
+    };
+
+    //bits below it are indices of R.styleable.RateWidget set on widget in app namespace
+    private final static long HAS_LEGACY = 1L << 63;
+
+    //styles of widgets without own attributes, by defStyleAttr and style resource; themes are weak keys
+    private final static Map<Resources.Theme, LongSparseArray<RateWidgetStyle>> sCache = new WeakHashMap<>();
+    private static int sResolvedCount = 0;
+
+    final int selectedColor;
+    final int simpleColor;
+    final int backgroundColor;
+    final int maxValue;
+    final boolean isScrubEnabled;
+    final int renderMode;
+    final int drawMode;
+    final int animationMode;
+
+    private RateWidgetStyle(TypedArray arr, int themeColorSelected){
+        this(arr.getColor(R.styleable.RateWidget_selected_color, themeColorSelected),
+                arr.getColor(R.styleable.RateWidget_simple_color, RateWidget.DEFAULT_COLOR_SIMPLE),
+                arr.getColor(R.styleable.RateWidget_background_color, RateWidget.DEFAULT_COLOR_BACKGROUND),
+                arr.getInt(R.styleable.RateWidget_max_value, RateWidget.DEFAULT_MAX_VALUE),
+                arr.getBoolean(R.styleable.RateWidget_scrub_enabled, false),
+                arr.getInt(R.styleable.RateWidget_render_mode, RateWidget.RENDER_MODE_DEFAULT),
+                arr.getInt(R.styleable.RateWidget_draw_mode, RateWidget.DRAW_MODE_CACHED),
+                arr.getInt(R.styleable.RateWidget_animation_mode, RateWidget.ANIMATION_MODE_FRAME));
+    }
+
+    RateWidgetStyle(int selectedColor, int simpleColor, int backgroundColor, int maxValue,
+                    boolean isScrubEnabled, int renderMode, int drawMode, int animationMode){
+        this.selectedColor = selectedColor;
+        this.simpleColor = simpleColor;
+        this.backgroundColor = backgroundColor;
+        this.maxValue = maxValue;
+        this.isScrubEnabled = isScrubEnabled;
+        this.renderMode = renderMode;
+        this.drawMode = drawMode;
+        this.animationMode = animationMode;
+    }
+
+    /**
+     * @param own attributes found by {@link #findOwnAttributes}, legacy ones are skipped
+     * when widget sets the same attribute in app namespace, base has its value already
+     */
+    private RateWidgetStyle(RateWidgetStyle base, AttributeSet attrs, long own){
+        selectedColor = isStyled(own, R.styleable.RateWidget_selected_color) ? base.selectedColor
+                : legacyColor(attrs, RateWidget.CustomAttributes.SELECTED_COLOR, base.selectedColor);
+        simpleColor = isStyled(own, R.styleable.RateWidget_simple_color) ? base.simpleColor
+                : legacyColor(attrs, RateWidget.CustomAttributes.SIMPLE_COLOR, base.simpleColor);
+        backgroundColor = isStyled(own, R.styleable.RateWidget_background_color) ? base.backgroundColor
+                : legacyColor(attrs, RateWidget.CustomAttributes.BACKGROUND_COLOR, base.backgroundColor);
+        maxValue = isStyled(own, R.styleable.RateWidget_max_value) ? base.maxValue
+                : attrs.getAttributeIntValue(null, RateWidget.CustomAttributes.MAX_VALUE, base.maxValue);
+        isScrubEnabled = isStyled(own, R.styleable.RateWidget_scrub_enabled) ? base.isScrubEnabled
+                : attrs.getAttributeBooleanValue(null, RateWidget.CustomAttributes.SCRUB_ENABLED, base.isScrubEnabled);
+        String mode = isStyled(own, R.styleable.RateWidget_render_mode) ? null
+                : attrs.getAttributeValue(null, RateWidget.CustomAttributes.RENDER_MODE);
+        renderMode = mode == null ? base.renderMode : RateWidget.CustomAttributes.RENDER_MODE_LOW_MEMORY.equals(mode) ?
+                RateWidget.RENDER_MODE_LOW_MEMORY : RateWidget.RENDER_MODE_DEFAULT;
+        mode = isStyled(own, R.styleable.RateWidget_draw_mode) ? null
+                : attrs.getAttributeValue(null, RateWidget.CustomAttributes.DRAW_MODE);
+        drawMode = mode == null ? base.drawMode : RateWidget.CustomAttributes.DRAW_MODE_DIRECT.equals(mode) ?
+                RateWidget.DRAW_MODE_DIRECT : RateWidget.DRAW_MODE_CACHED;
+        // there has never been attribute without namespace for it
+        animationMode = base.animationMode;
+    }
+
+    private static boolean isStyled(long own, int index){
+        return (own & (1L << index)) != 0;
+    }
+
+    private static int legacyColor(AttributeSet attrs, String name, int defaultColor){
+        String color = attrs.getAttributeValue(null, name);
+        // "#AARRGGBB" as it was always parsed, alpha is not added to "#RRGGBB"
+        return color == null ? defaultColor : (int) Long.parseLong(color.substring(1), 16);
+    }
+
+    /**
+     * @param attrs attributes of widget, may be null
+     * @param defStyleAttr theme attribute of default style, 0 for none
+     */
+    static synchronized RateWidgetStyle obtain(Context context, AttributeSet attrs, int defStyleAttr){
+        long own = attrs == null ? 0 : findOwnAttributes(attrs);
+        if (own == 0){
+            // nothing but style="@style/..." may differ between such widgets
+            return obtainShared(context, attrs, defStyleAttr, attrs == null ? 0 : attrs.getStyleAttribute());
+        }
+        return withLegacyAttributes(resolve(context, attrs, defStyleAttr, obtainShared(context, null, 0, 0).selectedColor), attrs);
+    }
+
+    /**
+     * @param style resolved from styled attributes of widget, its style and theme
+     * @return style with attributes without namespace applied over it, app namespace ones win
+     */
+    static RateWidgetStyle withLegacyAttributes(RateWidgetStyle style, AttributeSet attrs){
+        long own = findOwnAttributes(attrs);
+        return (own & HAS_LEGACY) == 0 ? style : new RateWidgetStyle(style, attrs, own);
+    }
+
+    /**
+     * @return selected color of theme, it is used unless widget sets its own
+     */
+    static int getThemeColorSelected(Context context){
+        return obtain(context, null, 0).selectedColor;
+    }
+
+    private static RateWidgetStyle obtainShared(Context context, AttributeSet attrs, int defStyleAttr, int styleRes){
+        Resources.Theme theme = context.getTheme();
+        LongSparseArray<RateWidgetStyle> styles = sCache.get(theme);
+        if (styles == null){
+            styles = new LongSparseArray<>();
+            sCache.put(theme, styles);
+        }
+        long key = ((long) defStyleAttr << 32) | (styleRes & 0xffffffffL);
+        RateWidgetStyle style = styles.get(key);
+        if (style == null){
+            int themeColorSelected = key == 0 ?
+                    resolveThemeColorSelected(context) : obtainShared(context, null, 0, 0).selectedColor;
+            style = resolve(context, attrs, defStyleAttr, themeColorSelected);
+            styles.put(key, style);
+        }
+        return style;
+    }
+
+    private static RateWidgetStyle resolve(Context context, AttributeSet attrs, int defStyleAttr, int themeColorSelected){
+        // style="@style/..." of widget is taken by obtainStyledAttributes itself
+        TypedArray arr = context.obtainStyledAttributes(attrs, R.styleable.RateWidget, defStyleAttr, 0);
+        try {
+            sResolvedCount++;
+            return new RateWidgetStyle(arr, themeColorSelected);
+        } finally {
+            arr.recycle();
+        }
+    }
+
+    private static int resolveThemeColorSelected(Context context){
+        if (Build.VERSION.SDK_INT < 21){
+            return RateWidget.DEFAULT_COLOR_SELECTED;
+        }
+        TypedArray arr = context.obtainStyledAttributes(new int[]{android.R.attr.colorPrimary});
+        try {
+            return arr.getColor(0, RateWidget.DEFAULT_COLOR_SELECTED);
+        } finally {
+            arr.recycle();
+        }
+    }
+
+    /**
+     * @return bits of R.styleable.RateWidget indices and HAS_LEGACY flag of attributes set right on widget
+     */
+    private static long findOwnAttributes(AttributeSet attrs){
+        long found = 0;
+        for (int i = 0; i < attrs.getAttributeCount(); i++){
+            int resource = attrs.getAttributeNameResource(i);
+            if (resource == 0){
+                // attribute without namespace has no resource id
+                String name = attrs.getAttributeName(i);
+                for (String legacy : LEGACY_NAMES){
+                    if (legacy.equals(name)){
+                        found |= HAS_LEGACY;
+                        break;
+                    }
+                }
+            } else {
+                // styleable arrays are generated sorted by attribute id
+                int index = Arrays.binarySearch(R.styleable.RateWidget, resource);
+                if (index >= 0){
+                    found |= 1L << index;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return number of styles resolved from resources since process start
+     */
+    static synchronized int getResolvedCount(){
+        return sResolvedCount;
+    }
+
+    /**
+     * Forget resolved styles, so the next widget resolves its style as the first one did
+     */
+    static synchronized void clear(){
+        sCache.clear();
+    }
+}
@@ -0,0 +1,126 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.content.Context;
+import android.util.Log;
+import android.view.View;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+
+/**
+ * Turns taps on rate widgets into rating events stored in {@link RatingOutbox}.
+ *
+ * User often taps several points before settling on the final one,
+ * so only the rate which stayed selected for the debounce interval is recorded.
+ * All disk work is done on io scheduler.
+ */
+public class RatingRecorder {
+
+    private final static String TAG = "RatingRecorder";
+    private final static String OUTBOX_FILE_NAME = "ratings.outbox";
+    private final static int SYNC_EVERY = 32;
+    public final static long DEFAULT_DEBOUNCE_MILLIS = 1500;
+
+    private static RatingRecorder sShared;
+
+    private final RatingOutbox mOutbox;
+    private final long mDebounceMillis;
+
+    public RatingRecorder(RatingOutbox outbox, long debounceMillis){
+        mOutbox = outbox;
+        mDebounceMillis = debounceMillis;
+    }
+
+    /**
+     * @return recorder writing to the app private outbox, shared by all screens
+     */
+    public static synchronized RatingRecorder getShared(Context context){
+        if (sShared == null){
+            File file = new File(context.getApplicationContext().getFilesDir(), OUTBOX_FILE_NAME);
+            sShared = new RatingRecorder(new RatingOutbox(file, SYNC_EVERY), DEFAULT_DEBOUNCE_MILLIS);
+        }
+        return sShared;
+    }
+
+    /**
+     * Record final rates of widget as answers to question. Recording stops when widget
+     * is detached from window, rate picked right before that is recorded immediately.
+     */
+    public Disposable record(RateWidget widget, int questionId){
+        return record(widget, questionId, rate -> {});
+    }
+
+    /**
+     * Same as {@link #record(RateWidget, int)}, disposing returned disposable stops recording
+     * as detaching does, so rate picked right before it is not lost.
+     *
+     * @param onRecorded called on io thread with every rate which has been appended to outbox
+     */
+    public Disposable record(RateWidget widget, int questionId, Consumer<Integer> onRecorded){
+        PublishSubject<Object> stops = PublishSubject.create();
+        // subscription completes by itself once recording stops and the last rate is written
+        widget.getRatedSubject()
+                .takeUntil(Observable.merge(detaches(widget), stops))
+                .timestamp(TimeUnit.MILLISECONDS)
+                .debounce(mDebounceMillis, TimeUnit.MILLISECONDS)
+                .observeOn(Schedulers.io())
+                .subscribe(rate -> {
+                            mOutbox.append(questionId, rate.value(), rate.time());
+                            onRecorded.accept(rate.value());
+                        },
+                        error -> Log.e(TAG, "Failed to record rate", error),
+                        () -> flush().subscribe());
+        return Disposables.fromAction(() -> stops.onNext(widget));
+    }
+
+    private static Observable<View> detaches(View view){
+        return Observable.create(emitter -> {
+            View.OnAttachStateChangeListener listener = new View.OnAttachStateChangeListener() {
+                @Override
+                public void onViewAttachedToWindow(View v) {
+                }
+
+                @Override
+                public void onViewDetachedFromWindow(View v) {
+                    emitter.onNext(v);
+                }
+            };
+            view.addOnAttachStateChangeListener(listener);
+            emitter.setCancellable(() -> view.removeOnAttachStateChangeListener(listener));
+        });
+    }
+
+    /**
+     * Write buffered events to disk, e.g. when screen goes to background.
+     * Failure is only logged, events stay in memory until the next flush.
+     */
+    public Completable flush(){
+        return Completable.fromAction(mOutbox::flush)
+                .doOnError(error -> Log.e(TAG, "Failed to flush ratings", error))
+                .onErrorComplete()
+                .subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Send all recorded events to sink
+     *
+     * @return number of sent events
+     */
+    public Single<Integer> drain(RatingSink sink, int batchSize){
+        return Single.fromCallable(() -> mOutbox.drain(sink, batchSize))
+                .subscribeOn(Schedulers.io());
+    }
+
+    public RatingOutbox getOutbox(){
+        return mOutbox;
+    }
+}
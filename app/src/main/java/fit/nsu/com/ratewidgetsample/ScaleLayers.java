@@ -0,0 +1,135 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewAnimationUtils;
+import android.view.ViewGroup;
+import android.view.animation.AccelerateInterpolator;
+
+/**
+ * Fill of {@link RateWidget} animated as a separate layer over static scale of the widget.
+ *
+ * Layer is a view in overlay of widget parent, it shows the whole filled scale and is uncovered
+ * by circular reveal. Center of reveal is far to the left of the widget, so within scale height
+ * edge of revealed circle is a vertical line moving as the fill does. Circular reveal is the only
+ * public animator which runs on RenderThread, so the fill keeps moving while UI thread is busy.
+ * Property animators of scaleX or translationX would not help here: ViewPropertyAnimator and
+ * ObjectAnimator compute every frame on UI thread and stop together with it.
+ *
+ * Reveal can't be retargeted from where it is, new tap makes running animation jump to its end.
+ */
+@TargetApi(21)
+final class ScaleLayers {
+
+    // reveal center is that many widget widths to the left, so its edge bends less than a pixel
+    private final static int CENTER_DISTANCE_WIDTHS = 32;
+
+    private final View mHost;
+    private FillLayer mFill;
+    private Animator mAnimator;
+
+    ScaleLayers(View host){
+        mHost = host;
+    }
+
+    /**
+     * @return true if host can be animated by layers: it is drawn by hardware renderer inside a view group
+     */
+    static boolean isSupported(View host){
+        return Build.VERSION.SDK_INT >= 21 && host.isHardwareAccelerated() && host.getParent() instanceof ViewGroup;
+    }
+
+    /**
+     * Reveal filled scale from fromX to toX. Host must already show the scale filled up to
+     * the lower of them, layer covers the rest.
+     *
+     * @param onEnd called on main thread when layer has reached toX, layer is removed right before
+     * @return false if animation can't be started, e.g. host is not attached yet
+     */
+    boolean start(BaseScaleCache.BaseScale scale, float lineY, float fromX, float toX,
+                  long durationMillis, Runnable onEnd){
+        cancel();
+        if (!isSupported(mHost)){
+            return false;
+        }
+        int width = mHost.getWidth();
+        int height = mHost.getHeight();
+        if (mFill == null){
+            mFill = new FillLayer(mHost.getContext());
+        }
+        mFill.mScale = scale;
+        mFill.layout(mHost.getLeft(), mHost.getTop(), mHost.getLeft() + width, mHost.getTop() + height);
+        // pixels on the left are filled in host already, antialiased edges would be blended twice
+        mFill.setClipBounds(new Rect((int) Math.max(0f, Math.min(fromX, toX)), 0, width, height));
+        ((ViewGroup) mHost.getParent()).getOverlay().add(mFill);
+
+        int centerX = -CENTER_DISTANCE_WIDTHS * width;
+        Animator animator = ViewAnimationUtils.createCircularReveal(mFill, centerX, (int) lineY,
+                Math.max(0f, fromX - centerX), Math.max(0f, toX - centerX));
+        animator.setDuration(durationMillis);
+        // the same as frame animation starting from rest
+        animator.setInterpolator(new AccelerateInterpolator());
+        animator.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                mAnimator = null;
+                remove();
+                onEnd.run();
+            }
+        });
+        mAnimator = animator;
+        try {
+            animator.start();
+        } catch (IllegalStateException e){
+            // layer is not attached to hardware rendered window
+            mAnimator = null;
+            remove();
+            return false;
+        }
+        return true;
+    }
+
+    boolean isRunning(){
+        return mAnimator != null;
+    }
+
+    /**
+     * Stop animation without calling its end callback and remove layer
+     */
+    void cancel(){
+        if (mAnimator != null){
+            Animator animator = mAnimator;
+            mAnimator = null;
+            // cancel would call onAnimationEnd
+            animator.removeAllListeners();
+            animator.cancel();
+        }
+        remove();
+    }
+
+    private void remove(){
+        // host may be already detached from the parent whose overlay has layer
+        if (mFill != null && mFill.getParent() instanceof ViewGroup){
+            ((ViewGroup) mFill.getParent()).removeView(mFill);
+        }
+    }
+
+    private static final class FillLayer extends View {
+        private BaseScaleCache.BaseScale mScale;
+
+        FillLayer(Context context){
+            super(context);
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            mScale.drawFilled(canvas);
+        }
+    }
+}
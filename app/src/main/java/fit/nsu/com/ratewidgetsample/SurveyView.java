@@ -0,0 +1,455 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.View;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import static java.lang.Math.abs;
+
+/**
+ * Survey of several questions rated on the same scale, drawn as rows of one view.
+ *
+ * Unlike a column of {@link RateWidget}s rows share everything but their state: one layout,
+ * renderer, label cache and pre-rendered base scale, no bitmap of their own and no subscriptions.
+ * Row under touch is found by division, point by the shared {@link HitTestIndex}.
+ */
+public class SurveyView extends View {
+
+    private final static String TAG = "SurveyView";
+    private final static int DEFAULT_QUESTION_COUNT = 10;
+    private final static Executor SNAPSHOT_EXECUTOR = command -> Schedulers.io().scheduleDirect(command);
+
+    private final int mInnerPointRadius = 8;
+    private final float mSelectedTextSize = 40f;
+    private final float mSimpleTextSize = 30f;
+    private final int mSimpleTextColor = 0x61000000;
+    private int mSelectedColor;
+    private final int mSimpleColor = RateWidget.DEFAULT_COLOR_SIMPLE;
+    private final int mBackgroundColor = RateWidget.DEFAULT_COLOR_BACKGROUND;
+
+    private int mPointNumber = RateWidget.DEFAULT_MAX_VALUE + 1;
+    //0 means the lowest height which fits a scale
+    private int mRowHeight = 0;
+
+    private RateState[] mStates = new RateState[0];
+    private RateAnimationDriver[] mDrivers = new RateAnimationDriver[0];
+    private int mRunningCount = 0;
+    private final Choreographer.FrameCallback mAnimationFrameCallback = this::onAnimationFrame;
+
+    //question index in high half, rate in low half
+    private final PublishSubject<Long> mRatedSubject = PublishSubject.create();
+
+    //null unless rates are kept in a store
+    private SurveySnapshotStore mSnapshotStore;
+    private int[] mSnapshotRates = new int[0];
+
+    private RateLayout mLayout;
+    private LabelCache mLabelCache;
+    private ScaleRenderer mRenderer;
+    private BaseScaleCache.BaseScale mBaseScale;
+    private HitTestIndex mHitTestIndex;
+    private final AndroidScaleCanvas mScaleCanvas = new AndroidScaleCanvas(newShapePaint());
+    private final Rect mClipBounds = new Rect();
+
+    public SurveyView(Context context) {
+        super(context);
+        init(null);
+    }
+
+    public SurveyView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        init(attrs);
+    }
+
+    public SurveyView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(attrs);
+    }
+
+    private void init(AttributeSet attrs){
+        mSelectedColor = RateWidgetStyle.getThemeColorSelected(getContext());
+        TypedArray arr = getContext().obtainStyledAttributes(attrs, R.styleable.SurveyView);
+        int questionCount = arr.getInt(R.styleable.SurveyView_question_count, DEFAULT_QUESTION_COUNT);
+        int maxValue = arr.getInt(R.styleable.SurveyView_max_value, RateWidget.DEFAULT_MAX_VALUE);
+        arr.recycle();
+        if (attrs != null){
+            // attributes without namespace are still read
+            questionCount = attrs.getAttributeIntValue(null, CustomAttributes.QUESTION_COUNT, questionCount);
+            maxValue = attrs.getAttributeIntValue(null, RateWidget.CustomAttributes.MAX_VALUE, maxValue);
+        }
+        mPointNumber = maxValue + 1;
+        setQuestionCount(questionCount);
+    }
+
+    private static Paint newShapePaint(){
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setDither(true);
+        return paint;
+    }
+
+    /**
+     * Change number of questions, rates of questions which are left are kept
+     */
+    public void setQuestionCount(int count){
+        if (count < 0){
+            throw new IllegalArgumentException("Question count should not be negative: " + count);
+        }
+        int oldCount = mStates.length;
+        if (count == oldCount){
+            return;
+        }
+        cancelAnimations();
+        RateState[] states = new RateState[count];
+        RateAnimationDriver[] drivers = new RateAnimationDriver[count];
+        for (int i = 0; i < count; i++){
+            states[i] = i < oldCount ? mStates[i] : new RateState();
+            drivers[i] = i < oldCount ? mDrivers[i] : new RateAnimationDriver(states[i]);
+        }
+        mStates = states;
+        mDrivers = drivers;
+        saveSnapshot();
+        requestLayout();
+        invalidate();
+    }
+
+    public int getQuestionCount(){
+        return mStates.length;
+    }
+
+    /**
+     * Set the highest rate of all questions, rates above it are lowered to it
+     */
+    public void setMaxValue(int maxValue){
+        if (maxValue < 0){
+            throw new IllegalArgumentException("Max value should not be negative: " + maxValue);
+        }
+        cancelAnimations();
+        mPointNumber = maxValue + 1;
+        for (RateState state : mStates){
+            if (state.getCurrentRate() > maxValue){
+                state.restore(maxValue);
+            }
+        }
+        saveSnapshot();
+        invalidate();
+    }
+
+    public int getMaxValue(){
+        return mPointNumber - 1;
+    }
+
+    /**
+     * @param height height of every row in pixels, 0 for the lowest one which fits a scale
+     */
+    public void setRowHeight(int height){
+        if (height < 0){
+            throw new IllegalArgumentException("Row height should not be negative: " + height);
+        }
+        mRowHeight = height;
+        requestLayout();
+        invalidate();
+    }
+
+    public int getRowHeight(){
+        return mRowHeight > 0 ? mRowHeight : RateLayout.getMinHeight(mInnerPointRadius, mSelectedTextSize);
+    }
+
+    /**
+     * @return rate index of question or {@link RateWidget#NOT_RATED}
+     */
+    public int getRate(int question){
+        return mStates[question].getCurrentRate();
+    }
+
+    /**
+     * Show rate of question without animation, e.g. restored from a draft
+     *
+     * @param rate rate index or {@link RateWidget#NOT_RATED}
+     */
+    public void setRate(int question, int rate){
+        if (rate != RateWidget.NOT_RATED && (rate < 0 || rate >= mPointNumber)){
+            throw new IllegalArgumentException("Rate should be in [0, " + (mPointNumber - 1) + "]: " + rate);
+        }
+        RateAnimationDriver driver = mDrivers[question];
+        if (driver.isRunning()){
+            driver.finish();
+            onAnimationSettled();
+        }
+        if (rate == RateWidget.NOT_RATED){
+            mStates[question].reset();
+        } else {
+            mStates[question].restore(rate);
+        }
+        saveSnapshot();
+        invalidateRow(question);
+    }
+
+    /**
+     * Keep rates of survey in store, so they outlive process death. Rates found in store are shown
+     * right away: store is read on calling thread, memory mapped snapshot of a thousand questions
+     * takes well under a frame. Every change of rates is then written to store on io scheduler,
+     * a burst of taps is written once.
+     *
+     * @param store store of capacity not less than question count, null to stop keeping rates
+     */
+    public void setSnapshotStore(@Nullable SurveySnapshotStore store){
+        mSnapshotStore = store;
+        if (store == null){
+            return;
+        }
+        int[] rates = null;
+        try {
+            rates = store.read();
+        } catch (IOException e){
+            Log.e(TAG, "Failed to read survey snapshot", e);
+        }
+        if (rates == null){
+            saveSnapshot();
+            return;
+        }
+        restoreRates(rates);
+    }
+
+    private void restoreRates(int[] rates){
+        cancelAnimations();
+        int count = Math.min(rates.length, mStates.length);
+        for (int i = 0; i < count; i++){
+            if (rates[i] == RateWidget.NOT_RATED){
+                mStates[i].reset();
+            } else {
+                // scale could be shortened since rates were saved
+                mStates[i].restore(Math.min(rates[i], mPointNumber - 1));
+            }
+        }
+        invalidate();
+    }
+
+    private void saveSnapshot(){
+        if (mSnapshotStore == null){
+            return;
+        }
+        if (mSnapshotRates.length != mStates.length){
+            mSnapshotRates = new int[mStates.length];
+        }
+        // rate of animating question is the rate it goes to
+        for (int i = 0; i < mStates.length; i++){
+            mSnapshotRates[i] = mStates[i].getCurrentRate();
+        }
+        mSnapshotStore.submit(mSnapshotRates, mSnapshotRates.length, SNAPSHOT_EXECUTOR);
+    }
+
+    /**
+     * Picked rate indices of one question, only the latest one is kept for a slow subscriber
+     */
+    public Flowable<Integer> getRateStream(int question){
+        if (question < 0 || question >= mStates.length){
+            throw new IndexOutOfBoundsException("No question " + question + " of " + mStates.length);
+        }
+        return mRatedSubject
+                .filter(event -> (int) (event >>> 32) == question)
+                .map(event -> (int) (long) event)
+                .toFlowable(BackpressureStrategy.LATEST);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int height = Math.max(getSuggestedMinimumHeight(), getRowHeight() * mStates.length);
+        setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        cancelAnimations();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN){
+            int row = (int) (event.getY() / getRowHeight());
+            HitTestIndex index = mHitTestIndex;
+            if (row >= 0 && row < mStates.length && index != null){
+                int point = index.indexAt(event.getX());
+                if (point != HitTestIndex.NO_POINT){
+                    selectRate(row, point);
+                }
+            }
+        }
+        return super.onTouchEvent(event);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mStates.length == 0 || getWidth() == 0){
+            return;
+        }
+        prepareLayout();
+        int rowHeight = mLayout.getHeight();
+        int first = 0;
+        int last = mStates.length - 1;
+        // only rows under invalidated area are drawn, animation invalidates its row only
+        if (canvas.getClipBounds(mClipBounds)){
+            first = Math.max(first, mClipBounds.top / rowHeight);
+            last = Math.min(last, (mClipBounds.bottom - 1) / rowHeight);
+        }
+        mScaleCanvas.setCanvas(canvas);
+        for (int row = first; row <= last; row++){
+            RateAnimationDriver driver = mDrivers[row];
+            float fillX = ScaleRenderer.fillXAt(mLayout, driver.getPosition());
+            canvas.save();
+            canvas.translate(0, row * rowHeight);
+            mBaseScale.draw(canvas, fillX);
+            mRenderer.drawFillEdge(mScaleCanvas, fillX);
+            mRenderer.drawOverlay(mScaleCanvas, driver.getSelected());
+            canvas.restore();
+        }
+        mScaleCanvas.setCanvas(null);
+    }
+
+    /**
+     * Make sure shared layout, labels and renderer match current size
+     */
+    private void prepareLayout(){
+        int rowHeight = getRowHeight();
+        if (mLayout == null || !mLayout.matches(getWidth(), rowHeight, mPointNumber, mInnerPointRadius)){
+            mLayout = RateLayout.obtain(getWidth(), rowHeight, mPointNumber, mInnerPointRadius);
+            mLabelCache = LabelCache.obtain(mPointNumber, mSelectedTextSize, mSimpleTextSize);
+            mScaleCanvas.setLabels(mLabelCache);
+            float simpleTextY = mLayout.getSelectedTextY()
+                    - abs(mLabelCache.getDigitCenterY(false) - mLabelCache.getDigitCenterY(true));
+            mRenderer = new ScaleRenderer(mLayout, RateLabels.obtain(mPointNumber), mSelectedColor, mSimpleColor,
+                    mBackgroundColor, mSimpleTextColor, simpleTextY);
+            mHitTestIndex = new HitTestIndex(mLayout.getPointCenters(), mLayout.getSelectedPointRadius());
+        }
+        if (mBaseScale == null || !mBaseScale.isBuiltFor(mRenderer, Bitmap.Config.ARGB_8888)){
+            mBaseScale = BaseScaleCache.getShared().obtain(mRenderer, Bitmap.Config.ARGB_8888);
+        }
+    }
+
+    private void selectRate(int row, int point){
+        RateState state = mStates[row];
+        if (!state.isRated()){
+            state.restore(0);
+        }
+        RateAnimationDriver driver = mDrivers[row];
+        boolean wasRunning = driver.isRunning();
+        if (driver.select(point, System.nanoTime())){
+            if (!wasRunning && mRunningCount++ == 0){
+                Choreographer.getInstance().postFrameCallback(mAnimationFrameCallback);
+            }
+        }
+        invalidateRow(row);
+        saveSnapshot();
+        mRatedSubject.onNext(((long) row << 32) | point);
+    }
+
+    private void onAnimationFrame(long frameTimeNanos){
+        for (int row = 0; row < mDrivers.length && mRunningCount > 0; row++){
+            RateAnimationDriver driver = mDrivers[row];
+            if (driver.isRunning()){
+                if (!driver.onFrame(frameTimeNanos)){
+                    onAnimationSettled();
+                }
+                invalidateRow(row);
+            }
+        }
+        if (mRunningCount > 0){
+            Choreographer.getInstance().postFrameCallback(mAnimationFrameCallback);
+        }
+    }
+
+    private void onAnimationSettled(){
+        mRunningCount--;
+    }
+
+    private void cancelAnimations(){
+        Choreographer.getInstance().removeFrameCallback(mAnimationFrameCallback);
+        for (RateAnimationDriver driver : mDrivers){
+            if (driver.isRunning()){
+                driver.finish();
+            }
+        }
+        mRunningCount = 0;
+    }
+
+    private void invalidateRow(int row){
+        int rowHeight = getRowHeight();
+        invalidate(0, row * rowHeight, getWidth(), (row + 1) * rowHeight);
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        SavedState savedState = new SavedState(super.onSaveInstanceState());
+        savedState.rates = new int[mStates.length];
+        for (int i = 0; i < mStates.length; i++){
+            savedState.rates[i] = mStates[i].getCurrentRate();
+        }
+        return savedState;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)){
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        restoreRates(savedState.rates);
+    }
+
+    public class CustomAttributes{
+        public final static String QUESTION_COUNT = "question_count";
+    }
+
+    static class SavedState extends BaseSavedState {
+        int[] rates;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
+            super(in);
+            rates = in.createIntArray();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeIntArray(rates);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR
+                = new Parcelable.Creator<SavedState>() {
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+}
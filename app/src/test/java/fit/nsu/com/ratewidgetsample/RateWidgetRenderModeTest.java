@@ -0,0 +1,37 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateWidgetRenderModeTest {
+
+    private final static int BACKGROUND = 0xFFFFFFFF;
+    private final static int SELECTED = 0xFF3F51B5;
+    private final static int SIMPLE = 0xFFD8D8D8;
+    private final static int TRANSLUCENT = 0x80FF0000;
+
+    @Test
+    public void defaultModeIsArgb() throws Exception {
+        assertEquals(Bitmap.Config.ARGB_8888,
+                RateWidget.getBitmapConfig(RateWidget.RENDER_MODE_DEFAULT, BACKGROUND, SELECTED, SIMPLE));
+    }
+
+    @Test
+    public void lowMemoryModeOfOpaqueColorsIsRgb565() throws Exception {
+        assertEquals(Bitmap.Config.RGB_565,
+                RateWidget.getBitmapConfig(RateWidget.RENDER_MODE_LOW_MEMORY, BACKGROUND, SELECTED, SIMPLE));
+    }
+
+    @Test
+    public void lowMemoryModeFallsBackToArgbForAnyTranslucentColor() throws Exception {
+        int mode = RateWidget.RENDER_MODE_LOW_MEMORY;
+        assertEquals(Bitmap.Config.ARGB_8888, RateWidget.getBitmapConfig(mode, TRANSLUCENT, SELECTED, SIMPLE));
+        assertEquals(Bitmap.Config.ARGB_8888, RateWidget.getBitmapConfig(mode, BACKGROUND, TRANSLUCENT, SIMPLE));
+        assertEquals(Bitmap.Config.ARGB_8888, RateWidget.getBitmapConfig(mode, BACKGROUND, SELECTED, TRANSLUCENT));
+        // transparent background of a widget over its parent is translucent too
+        assertEquals(Bitmap.Config.ARGB_8888, RateWidget.getBitmapConfig(mode, 0, SELECTED, SIMPLE));
+    }
+}
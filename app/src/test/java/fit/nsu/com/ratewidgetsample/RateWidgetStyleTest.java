@@ -0,0 +1,202 @@
+package fit.nsu.com.ratewidgetsample;
+
+import android.util.AttributeSet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RateWidgetStyleTest {
+
+    private final static String APP_NAMESPACE = "http://schemas.android.com/apk/res-auto";
+
+    // as resolved from app namespace attributes, style and theme
+    private final RateWidgetStyle mBase = new RateWidgetStyle(0xFF00FF00, 0xFFD8D8D8, 0xFFFFFFFF, 10,
+            false, RateWidget.RENDER_MODE_DEFAULT, RateWidget.DRAW_MODE_CACHED, RateWidget.ANIMATION_MODE_FRAME);
+
+    @Test
+    public void appNamespaceWinsOverLegacyAttribute() throws Exception {
+        Attributes attrs = new Attributes()
+                .styled(R.styleable.RateWidget_selected_color, "#ff00ff00")
+                .legacy(RateWidget.CustomAttributes.SELECTED_COLOR, "#ffff0000")
+                .styled(R.styleable.RateWidget_max_value, "10")
+                .legacy(RateWidget.CustomAttributes.MAX_VALUE, "4");
+        RateWidgetStyle style = RateWidgetStyle.withLegacyAttributes(mBase, attrs);
+        assertEquals(0xFF00FF00, style.selectedColor);
+        assertEquals(10, style.maxValue);
+    }
+
+    @Test
+    public void legacyAttributeWinsOverStyle() throws Exception {
+        Attributes attrs = new Attributes()
+                .styled(R.styleable.RateWidget_selected_color, "#ff00ff00")
+                .legacy(RateWidget.CustomAttributes.SIMPLE_COLOR, "#ff0000ff")
+                .legacy(RateWidget.CustomAttributes.MAX_VALUE, "4")
+                .legacy(RateWidget.CustomAttributes.DRAW_MODE, RateWidget.CustomAttributes.DRAW_MODE_DIRECT);
+        RateWidgetStyle style = RateWidgetStyle.withLegacyAttributes(mBase, attrs);
+        assertEquals(0xFF00FF00, style.selectedColor);
+        assertEquals(0xFF0000FF, style.simpleColor);
+        assertEquals(4, style.maxValue);
+        assertEquals(RateWidget.DRAW_MODE_DIRECT, style.drawMode);
+        assertEquals(mBase.backgroundColor, style.backgroundColor);
+    }
+
+    @Test
+    public void styleWithoutLegacyAttributesIsKept() throws Exception {
+        Attributes attrs = new Attributes().styled(R.styleable.RateWidget_max_value, "10");
+        assertSame(mBase, RateWidgetStyle.withLegacyAttributes(mBase, attrs));
+    }
+
+    /**
+     * Attributes of widget tag: app namespace ones have resource ids, ones without namespace do not
+     */
+    private static class Attributes implements AttributeSet {
+        private final List<String> mNamespaces = new ArrayList<>();
+        private final List<String> mNames = new ArrayList<>();
+        private final List<String> mValues = new ArrayList<>();
+        private final List<Integer> mResources = new ArrayList<>();
+
+        Attributes styled(int index, String value){
+            // name is not needed, app namespace attributes are matched by resource id
+            return add(APP_NAMESPACE, "styled_" + index, value, R.styleable.RateWidget[index]);
+        }
+
+        Attributes legacy(String name, String value){
+            return add(null, name, value, 0);
+        }
+
+        private Attributes add(String namespace, String name, String value, int resource){
+            mNamespaces.add(namespace);
+            mNames.add(name);
+            mValues.add(value);
+            mResources.add(resource);
+            return this;
+        }
+
+        private int indexOf(String namespace, String name){
+            for (int i = 0; i < mNames.size(); i++){
+                String ns = mNamespaces.get(i);
+                if (mNames.get(i).equals(name) && (namespace == null ? ns == null : namespace.equals(ns))){
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int getAttributeCount() {
+            return mNames.size();
+        }
+
+        @Override
+        public String getAttributeName(int index) {
+            return mNames.get(index);
+        }
+
+        @Override
+        public String getAttributeValue(int index) {
+            return mValues.get(index);
+        }
+
+        @Override
+        public String getAttributeValue(String namespace, String name) {
+            int index = indexOf(namespace, name);
+            return index < 0 ? null : mValues.get(index);
+        }
+
+        @Override
+        public String getPositionDescription() {
+            return "test";
+        }
+
+        @Override
+        public int getAttributeNameResource(int index) {
+            return mResources.get(index);
+        }
+
+        @Override
+        public int getAttributeListValue(String namespace, String attribute, String[] options, int defaultValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean getAttributeBooleanValue(String namespace, String attribute, boolean defaultValue) {
+            String value = getAttributeValue(namespace, attribute);
+            return value == null ? defaultValue : Boolean.parseBoolean(value);
+        }
+
+        @Override
+        public int getAttributeResourceValue(String namespace, String attribute, int defaultValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getAttributeIntValue(String namespace, String attribute, int defaultValue) {
+            String value = getAttributeValue(namespace, attribute);
+            return value == null ? defaultValue : Integer.parseInt(value);
+        }
+
+        @Override
+        public int getAttributeUnsignedIntValue(String namespace, String attribute, int defaultValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public float getAttributeFloatValue(String namespace, String attribute, float defaultValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getAttributeListValue(int index, String[] options, int defaultValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean getAttributeBooleanValue(int index, boolean defaultValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getAttributeResourceValue(int index, int defaultValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getAttributeIntValue(int index, int defaultValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getAttributeUnsignedIntValue(int index, int defaultValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public float getAttributeFloatValue(int index, float defaultValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getIdAttribute() {
+            return null;
+        }
+
+        @Override
+        public String getClassAttribute() {
+            return null;
+        }
+
+        @Override
+        public int getIdAttributeResourceValue(int defaultValue) {
+            return defaultValue;
+        }
+
+        @Override
+        public int getStyleAttribute() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package fit.nsu.com.ratewidgetsample.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import fit.nsu.com.ratewidgetsample.DamageTracker;
+import fit.nsu.com.ratewidgetsample.RateAnimationDriver;
+import fit.nsu.com.ratewidgetsample.RateLabels;
+import fit.nsu.com.ratewidgetsample.RateLayout;
+import fit.nsu.com.ratewidgetsample.RateState;
+import fit.nsu.com.ratewidgetsample.ScaleCanvas;
+import fit.nsu.com.ratewidgetsample.ScaleRenderer;
+
+/**
+ * Leg duration and frames of animation across the whole scale as RateWidget runs them:
+ * driver steps, fill edge and labels are drawn and repainted span goes to damage.
+ * Canvas only counts primitives, base scale copy is left to the platform.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AnimationBenchmark {
+
+    //60 fps
+    private final static long FRAME_NANOS = 16666667;
+
+    @Param({"5", "11", "101", "1001"})
+    public int pointCount;
+
+    private RateLayout mLayout;
+    private ScaleRenderer mRenderer;
+    private final RateState mState = new RateState();
+    private final RateAnimationDriver mDriver = new RateAnimationDriver(mState);
+    private final DamageTracker mDamage = new DamageTracker();
+    private final CountingCanvas mCanvas = new CountingCanvas();
+    private int mTarget = 0;
+
+    @Setup
+    public void setUp() {
+        mLayout = new RateLayout(1080, 300, pointCount, 8);
+        mRenderer = new ScaleRenderer(mLayout, RateLabels.obtain(pointCount),
+                0xFF0000FF, 0xFFD8D8D8, 0xFFFFFFFF, 0x61000000, 200f);
+    }
+
+    @Benchmark
+    public long duration() {
+        mTarget = (mTarget + 1) % pointCount;
+        return mDriver.durationNanos(mTarget);
+    }
+
+    @Benchmark
+    public int fullScaleAnimation() {
+        mCanvas.ops = 0;
+        mState.restore(0);
+        mDriver.select(pointCount - 1, 0);
+        float drawnFillX = ScaleRenderer.fillXAt(mLayout, mDriver.getPosition());
+        long now = 0;
+        boolean isRunning = true;
+        while (isRunning) {
+            isRunning = mDriver.onFrame(now += FRAME_NANOS);
+            float fillX = ScaleRenderer.fillXAt(mLayout, mDriver.getPosition());
+            mRenderer.drawFillEdge(mCanvas, fillX);
+            mRenderer.drawOverlay(mCanvas, mDriver.getSelected());
+            mDamage.add(Math.min(fillX, drawnFillX), 0,
+                    Math.max(fillX, drawnFillX), mLayout.getHeight());
+            drawnFillX = fillX;
+            mDamage.reset();
+        }
+        return mCanvas.ops;
+    }
+
+    private static class CountingCanvas implements ScaleCanvas {
+        int ops;
+
+        @Override
+        public void drawLine(float startX, float stopX, float y, float strokeWidth, int color) {
+            ops++;
+        }
+
+        @Override
+        public void drawCircle(float centerX, float centerY, float radius, int color) {
+            ops++;
+        }
+
+        @Override
+        public void drawLabel(int index, String text, float centerX, float baselineY, boolean selected, int color) {
+            ops++;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package fit.nsu.com.ratewidgetsample.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import fit.nsu.com.ratewidgetsample.HitTestIndex;
+import fit.nsu.com.ratewidgetsample.RateLayout;
+
+/**
+ * Resolution of tap x coordinate to point index, compared with the linear
+ * scan over boxed centers which subscribeToClicks used to do
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HitTestBenchmark {
+
+    private final static int TAPS = 1024;
+
+    @Param({"5", "11", "101", "1001"})
+    public int pointCount;
+
+    private HitTestIndex mIndex;
+    private HitTestIndex mUnevenIndex;
+    private List<Integer> mBoxedCenters;
+    private float mSlop;
+    private final float[] mTaps = new float[TAPS];
+    private int mTap = 0;
+
+    @Setup
+    public void setUp() {
+        RateLayout layout = new RateLayout(1080, 300, pointCount, 8);
+        mSlop = layout.getSelectedPointRadius();
+        mIndex = new HitTestIndex(layout.getPointCenters(), mSlop);
+
+        float[] uneven = layout.getPointCenters().clone();
+        if (uneven.length > 2) {
+            uneven[1] += layout.getStep() / 3;
+        }
+        mUnevenIndex = new HitTestIndex(uneven, mSlop);
+
+        mBoxedCenters = new ArrayList<>();
+        for (float center : layout.getPointCenters()) {
+            mBoxedCenters.add((int) center);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < TAPS; ++i) {
+            mTaps[i] = random.nextFloat() * layout.getWidth();
+        }
+    }
+
+    private float nextTap() {
+        mTap = (mTap + 1) & (TAPS - 1);
+        return mTaps[mTap];
+    }
+
+    @Benchmark
+    public int uniformIndex() {
+        return mIndex.indexAt(nextTap());
+    }
+
+    @Benchmark
+    public int binarySearchIndex() {
+        return mUnevenIndex.indexAt(nextTap());
+    }
+
+    @Benchmark
+    public int linearScan() {
+        float x = nextTap();
+        for (int i = 0; i < mBoxedCenters.size(); ++i) {
+            if (Math.abs(x - (float) mBoxedCenters.get(i)) < mSlop) {
+                return i;
+            }
+        }
+        return HitTestIndex.NO_POINT;
+    }
+}
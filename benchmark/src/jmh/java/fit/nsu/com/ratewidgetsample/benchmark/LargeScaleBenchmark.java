@@ -0,0 +1,91 @@
+package fit.nsu.com.ratewidgetsample.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import fit.nsu.com.ratewidgetsample.HitTestIndex;
+import fit.nsu.com.ratewidgetsample.RateLabels;
+import fit.nsu.com.ratewidgetsample.RateLayout;
+import fit.nsu.com.ratewidgetsample.RateState;
+import fit.nsu.com.ratewidgetsample.ScaleCanvas;
+import fit.nsu.com.ratewidgetsample.ScaleRenderer;
+
+/**
+ * Layout and redraw cost of fine-grained scales used as sliders.
+ * Canvas only counts primitives, so numbers show renderer overhead and op count, not rasterization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LargeScaleBenchmark {
+
+    @Param({"11", "1001", "10001"})
+    public int pointCount;
+
+    public int width = 1080;
+    public int height = 300;
+
+    private RateLayout mLayout;
+    private ScaleRenderer mRenderer;
+    private final CountingCanvas mCanvas = new CountingCanvas();
+    private float mSpanWidth;
+
+    @Setup
+    public void setUp() {
+        mLayout = new RateLayout(width, height, pointCount, 8);
+        mRenderer = new ScaleRenderer(mLayout, RateLabels.obtain(pointCount),
+                0xFF0000FF, 0xFFD8D8D8, 0xFFFFFFFF, 0x61000000, 200f);
+        // one animation frame moves fill by about 1/30 of line
+        mSpanWidth = (mLayout.getLineEndX() - mLayout.getLineStartX()) / 30;
+    }
+
+    @Benchmark
+    public int layout() {
+        RateLayout layout = new RateLayout(width, height, pointCount, 8);
+        HitTestIndex index = new HitTestIndex(layout.getPointCenters(), layout.getSelectedPointRadius());
+        return layout.getTickStride() + (index.isUniform() ? 1 : 0);
+    }
+
+    @Benchmark
+    public int fullRedraw() {
+        mCanvas.ops = 0;
+        int selected = pointCount / 2;
+        mRenderer.draw(mCanvas, ScaleRenderer.fillX(mLayout, selected), selected);
+        return mCanvas.ops;
+    }
+
+    @Benchmark
+    public int animationFrame() {
+        mCanvas.ops = 0;
+        float fillX = ScaleRenderer.fillXAt(mLayout, pointCount * 0.37f);
+        mRenderer.draw(mCanvas, fillX, RateState.INIT_STATE, fillX - mSpanWidth, fillX + 40);
+        return mCanvas.ops;
+    }
+
+    private static class CountingCanvas implements ScaleCanvas {
+        int ops;
+
+        @Override
+        public void drawLine(float startX, float stopX, float y, float strokeWidth, int color) {
+            ops++;
+        }
+
+        @Override
+        public void drawCircle(float centerX, float centerY, float radius, int color) {
+            ops++;
+        }
+
+        @Override
+        public void drawLabel(int index, String text, float centerX, float baselineY, boolean selected, int color) {
+            ops++;
+        }
+    }
+}
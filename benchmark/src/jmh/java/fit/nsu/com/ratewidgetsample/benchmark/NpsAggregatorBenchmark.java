@@ -0,0 +1,81 @@
+package fit.nsu.com.ratewidgetsample.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import fit.nsu.com.ratewidgetsample.NpsAggregator;
+import fit.nsu.com.ratewidgetsample.RatingOutbox;
+
+/**
+ * Aggregation of 10M synthetic ratings of 30 questions: from primitive arrays in memory,
+ * streamed from outbox file in one pass and from the same file by fork-join workers.
+ * File is written once per trial, so it is mostly in page cache as a fresh log on server would be.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class NpsAggregatorBenchmark {
+
+    private final static int RATINGS = 10_000_000;
+    private final static int QUESTIONS = 30;
+
+    private int[] mQuestionIds;
+    private int[] mRates;
+    private File mFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mQuestionIds = new int[RATINGS];
+        mRates = new int[RATINGS];
+        Random random = new Random(42);
+        mFile = File.createTempFile("ratings", ".bin");
+        try (RatingOutbox outbox = new RatingOutbox(mFile, 64 * 1024)) {
+            for (int i = 0; i < RATINGS; ++i) {
+                mQuestionIds[i] = random.nextInt(QUESTIONS);
+                mRates[i] = random.nextInt(NpsAggregator.MAX_RATE + 1);
+                outbox.append(mQuestionIds[i], mRates[i], i);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public double inMemory() {
+        NpsAggregator aggregator = new NpsAggregator();
+        for (int i = 0; i < RATINGS; ++i) {
+            aggregator.add(mQuestionIds[i], mRates[i]);
+        }
+        return aggregator.getScore();
+    }
+
+    @Benchmark
+    public double streamed() throws IOException {
+        return NpsAggregator.read(mFile).getScore();
+    }
+
+    @Benchmark
+    public double forkJoin() throws IOException {
+        return NpsAggregator.readParallel(mFile, RatingOutbox.HEADER_SIZE, ForkJoinPool.commonPool()).getScore();
+    }
+}
@@ -0,0 +1,38 @@
+package fit.nsu.com.ratewidgetsample.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import fit.nsu.com.ratewidgetsample.RateLayout;
+
+/**
+ * Point layout computation which used to run inside getInitialBitmap()
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RateLayoutBenchmark {
+
+    @Param({"5", "11", "101", "1001"})
+    public int pointCount;
+
+    public int width = 1080;
+    public int height = 300;
+
+    @Benchmark
+    public RateLayout compute() {
+        return new RateLayout(width, height, pointCount, 8);
+    }
+
+    @Benchmark
+    public RateLayout obtainCached() {
+        return RateLayout.obtain(width, height, pointCount, 8);
+    }
+}
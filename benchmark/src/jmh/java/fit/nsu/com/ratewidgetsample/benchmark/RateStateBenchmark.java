@@ -0,0 +1,58 @@
+package fit.nsu.com.ratewidgetsample.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import fit.nsu.com.ratewidgetsample.RateState;
+
+/**
+ * Rate transitions for a burst of taps, where every fourth tap
+ * lands after running animation has settled
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RateStateBenchmark {
+
+    private final static int TAPS = 1024;
+
+    @Param({"5", "11", "101", "1001"})
+    public int pointCount;
+
+    private final RateState mState = new RateState();
+    private final int[] mTaps = new int[TAPS];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < TAPS; ++i) {
+            mTaps[i] = random.nextInt(pointCount);
+        }
+    }
+
+    @Benchmark
+    public int tapBurst() {
+        mState.reset();
+        mState.restore(0);
+        int retargets = 0;
+        for (int i = 0; i < TAPS; ++i) {
+            if (mState.select(mTaps[i])) {
+                mState.onAnimationStart(mTaps[i]);
+                retargets++;
+            }
+            if ((i & 3) == 3 && mState.isAnimationRunning()) {
+                mState.onAnimationEnd();
+            }
+        }
+        return retargets;
+    }
+}
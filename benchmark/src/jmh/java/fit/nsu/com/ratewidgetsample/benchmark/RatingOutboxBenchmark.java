@@ -0,0 +1,76 @@
+package fit.nsu.com.ratewidgetsample.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import fit.nsu.com.ratewidgetsample.RatingBatch;
+import fit.nsu.com.ratewidgetsample.RatingOutbox;
+import fit.nsu.com.ratewidgetsample.RatingSink;
+
+/**
+ * Appending and draining 100k buffered rating events,
+ * single shot per invocation as fsync cost depends on what is already written
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+public class RatingOutboxBenchmark {
+
+    private final static int EVENTS = 100_000;
+
+    @Param({"32", "1024"})
+    public int syncEvery;
+
+    @Param({"500"})
+    public int batchSize;
+
+    private File mFile;
+    private RatingOutbox mOutbox;
+
+    private final RatingSink mSink = new RatingSink() {
+        @Override
+        public void send(RatingBatch batch) {
+            for (int i = 0; i < batch.size(); ++i) {
+                mChecksum += batch.getRate(i);
+            }
+        }
+    };
+    private long mChecksum;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("outbox", ".bin");
+        mOutbox = new RatingOutbox(mFile, syncEvery);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws IOException {
+        mOutbox.close();
+        mFile.delete();
+    }
+
+    @Benchmark
+    public long appendAndDrain() throws IOException {
+        for (int i = 0; i < EVENTS; ++i) {
+            mOutbox.append(i & 63, i % 11, i);
+        }
+        mOutbox.drain(mSink, batchSize);
+        return mChecksum;
+    }
+}
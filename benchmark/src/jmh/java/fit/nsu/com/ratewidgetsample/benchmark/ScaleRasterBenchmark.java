@@ -0,0 +1,113 @@
+package fit.nsu.com.ratewidgetsample.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import fit.nsu.com.ratewidgetsample.RateLabels;
+import fit.nsu.com.ratewidgetsample.RateLayout;
+import fit.nsu.com.ratewidgetsample.ScaleCanvas;
+import fit.nsu.com.ratewidgetsample.ScaleRenderer;
+
+/**
+ * Full renders per second of the scale rasterized headless with java.awt, as golden images are.
+ * Unlike {@link LargeScaleBenchmark} pixels are really drawn, so the number includes antialiasing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(jvmArgsAppend = "-Djava.awt.headless=true")
+public class ScaleRasterBenchmark {
+
+    public int width = 1000;
+    public int height = 300;
+
+    private RateLayout mLayout;
+    private ScaleRenderer mRenderer;
+    private RasterCanvas mCanvas;
+    private int mRate;
+
+    @Setup
+    public void setUp() {
+        mLayout = new RateLayout(width, height, 11, 8);
+        mRenderer = new ScaleRenderer(mLayout, RateLabels.obtain(mLayout.getPointCount()),
+                0xFFFEA002, 0xFFD8D8D8, 0xFFFFFFFF, 0x61000000, mLayout.getSelectedTextY() - 3.5f);
+        mCanvas = new RasterCanvas(width, height);
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        mRate = (mRate + 1) % mLayout.getPointCount();
+        mCanvas.clear();
+        mRenderer.draw(mCanvas, ScaleRenderer.fillX(mLayout, mRate), mRate);
+        return mCanvas.mImage;
+    }
+
+    /**
+     * The same drawing as of golden image canvas in core tests, labels are boxes of label size
+     */
+    private static class RasterCanvas implements ScaleCanvas {
+        private final static float SELECTED_TEXT_SIZE = 40f;
+        private final static float SIMPLE_TEXT_SIZE = 30f;
+
+        private final BufferedImage mImage;
+        private final Graphics2D mGraphics;
+        private final Line2D.Float mLine = new Line2D.Float();
+        private final Ellipse2D.Float mCircle = new Ellipse2D.Float();
+        private final Rectangle2D.Float mRect = new Rectangle2D.Float();
+
+        RasterCanvas(int width, int height) {
+            mImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            mGraphics = mImage.createGraphics();
+            mGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            mGraphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        }
+
+        void clear() {
+            mGraphics.setComposite(AlphaComposite.Clear);
+            mGraphics.fillRect(0, 0, mImage.getWidth(), mImage.getHeight());
+            mGraphics.setComposite(AlphaComposite.SrcOver);
+        }
+
+        @Override
+        public void drawLine(float startX, float stopX, float y, float strokeWidth, int color) {
+            mGraphics.setColor(new Color(color, true));
+            mGraphics.setStroke(new BasicStroke(strokeWidth, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER));
+            mLine.setLine(startX, y, stopX, y);
+            mGraphics.draw(mLine);
+        }
+
+        @Override
+        public void drawCircle(float centerX, float centerY, float radius, int color) {
+            mGraphics.setColor(new Color(color, true));
+            mCircle.setFrame(centerX - radius, centerY - radius, 2 * radius, 2 * radius);
+            mGraphics.fill(mCircle);
+        }
+
+        @Override
+        public void drawLabel(int index, String text, float centerX, float baselineY, boolean selected, int color) {
+            float size = selected ? SELECTED_TEXT_SIZE : SIMPLE_TEXT_SIZE;
+            float width = 0.6f * size * text.length();
+            float height = 0.7f * size;
+            mGraphics.setColor(new Color(color, true));
+            mRect.setRect(centerX - width / 2, baselineY - height, width, height);
+            mGraphics.fill(mRect);
+        }
+    }
+}
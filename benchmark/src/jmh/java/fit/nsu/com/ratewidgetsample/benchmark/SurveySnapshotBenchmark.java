@@ -0,0 +1,80 @@
+package fit.nsu.com.ratewidgetsample.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import fit.nsu.com.ratewidgetsample.SurveySnapshotStore;
+
+/**
+ * Restoring survey from snapshot as a new screen does it, synced write of a snapshot
+ * and a burst of taps which is coalesced into one write
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SurveySnapshotBenchmark {
+
+    private final static int TAPS = 20;
+
+    @Param({"10", "1000"})
+    public int questionCount;
+
+    private File mFile;
+    private int[] mRates;
+    private final List<Runnable> mTasks = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("survey", ".snapshot");
+        mRates = new int[questionCount];
+        for (int i = 0; i < questionCount; ++i) {
+            mRates[i] = i % 11;
+        }
+        SurveySnapshotStore store = new SurveySnapshotStore(mFile, questionCount);
+        store.write(mRates, questionCount);
+        store.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public int[] restore() throws IOException {
+        return new SurveySnapshotStore(mFile, questionCount).read();
+    }
+
+    @Benchmark
+    public long burstOfTaps() throws IOException {
+        SurveySnapshotStore store = new SurveySnapshotStore(mFile, questionCount);
+        for (int i = 0; i < TAPS; ++i) {
+            mRates[i % questionCount] = i % 11;
+            store.submit(mRates, questionCount, mTasks::add);
+        }
+        for (Runnable task : mTasks) {
+            task.run();
+        }
+        mTasks.clear();
+        store.close();
+        return store.getWrittenCount();
+    }
+}
@@ -0,0 +1,67 @@
+package fit.nsu.com.ratewidgetsample;
+
+/**
+ * Accumulates spans of bitmap repainted between two frames.
+ * Widget invalidates only union of them instead of the whole view.
+ *
+ * Class is free of android dependencies so it could be checked on JVM.
+ */
+public class DamageTracker {
+
+    //antialiasing may touch one pixel around the exact figure bounds
+    private final static int ANTIALIAS_PADDING = 1;
+
+    private int mLeft;
+    private int mTop;
+    private int mRight;
+    private int mBottom;
+    private boolean mIsEmpty = true;
+
+    /**
+     * Add repainted area. Coordinates may go in any order,
+     * e.g. rect with top below bottom is fine.
+     */
+    public void add(float x1, float y1, float x2, float y2){
+        int left = (int) Math.floor(Math.min(x1, x2)) - ANTIALIAS_PADDING;
+        int top = (int) Math.floor(Math.min(y1, y2)) - ANTIALIAS_PADDING;
+        int right = (int) Math.ceil(Math.max(x1, x2)) + ANTIALIAS_PADDING;
+        int bottom = (int) Math.ceil(Math.max(y1, y2)) + ANTIALIAS_PADDING;
+
+        if (mIsEmpty){
+            mLeft = left;
+            mTop = top;
+            mRight = right;
+            mBottom = bottom;
+            mIsEmpty = false;
+        } else {
+            mLeft = Math.min(mLeft, left);
+            mTop = Math.min(mTop, top);
+            mRight = Math.max(mRight, right);
+            mBottom = Math.max(mBottom, bottom);
+        }
+    }
+
+    public boolean isEmpty(){
+        return mIsEmpty;
+    }
+
+    public int getLeft() {
+        return mLeft;
+    }
+
+    public int getTop() {
+        return mTop;
+    }
+
+    public int getRight() {
+        return mRight;
+    }
+
+    public int getBottom() {
+        return mBottom;
+    }
+
+    public void reset(){
+        mIsEmpty = true;
+    }
+}
@@ -0,0 +1,103 @@
+package fit.nsu.com.ratewidgetsample;
+
+/**
+ * Maps touch x coordinate to index of the nearest point.
+ *
+ * Evenly spread points are resolved arithmetically, other ones by binary search,
+ * so lookup costs O(1) or O(log n) and allocates nothing.
+ */
+public final class HitTestIndex {
+
+    public final static int NO_POINT = -1;
+
+    //relative tolerance used to decide that points are spread evenly
+    private final static float UNIFORM_TOLERANCE = 1e-3f;
+
+    private final float[] mCenters;
+    private final float mSlop;
+    private final boolean mIsUniform;
+    private final float mFirst;
+    private final float mStep;
+
+    /**
+     * @param centers ascending x coordinates of points, array is not copied
+     * @param slop max distance from point center which still hits the point
+     */
+    public HitTestIndex(float[] centers, float slop){
+        mCenters = centers;
+        mSlop = slop;
+        mFirst = centers.length > 0 ? centers[0] : 0f;
+        mStep = centers.length > 1 ? (centers[centers.length - 1] - mFirst) / (centers.length - 1) : 0f;
+        mIsUniform = mStep > 0 && isUniform(centers, mStep);
+    }
+
+    private static boolean isUniform(float[] centers, float step){
+        // dense scale may have step close to float precision of far coordinates
+        float tolerance = Math.max(step * UNIFORM_TOLERANCE, 4 * Math.ulp(centers[centers.length - 1]));
+        for (int i = 1; i < centers.length; ++i){
+            if (Math.abs(centers[i] - centers[i - 1] - step) > tolerance){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return index of the nearest point or {@link #NO_POINT} if it is further than slop
+     */
+    public int indexAt(float x){
+        int nearest = nearestIndex(x);
+        if (nearest == NO_POINT){
+            return NO_POINT;
+        }
+        return Math.abs(x - mCenters[nearest]) < mSlop ? nearest : NO_POINT;
+    }
+
+    /**
+     * @return index of the nearest point regardless of slop or {@link #NO_POINT} for empty scale
+     */
+    public int nearestIndex(float x){
+        int count = mCenters.length;
+        if (count == 0){
+            return NO_POINT;
+        }
+        if (count == 1 || mStep <= 0){
+            return 0;
+        }
+        if (mIsUniform){
+            int nearest = Math.round((x - mFirst) / mStep);
+            return Math.max(0, Math.min(count - 1, nearest));
+        }
+        return nearestBySearch(x);
+    }
+
+    private int nearestBySearch(float x){
+        int low = 0;
+        int high = mCenters.length - 1;
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            if (mCenters[middle] < x){
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        // low is the first center >= x, so nearest one is either it or previous
+        if (low > 0 && x - mCenters[low - 1] <= mCenters[low] - x){
+            return low - 1;
+        }
+        return low;
+    }
+
+    public boolean isUniform() {
+        return mIsUniform;
+    }
+
+    public float getSlop() {
+        return mSlop;
+    }
+
+    public boolean isBuiltFor(float[] centers, float slop){
+        return mCenters == centers && mSlop == slop;
+    }
+}
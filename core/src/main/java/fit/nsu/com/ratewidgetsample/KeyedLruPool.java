@@ -0,0 +1,118 @@
+package fit.nsu.com.ratewidgetsample;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Bounded pool of reusable items grouped by key.
+ *
+ * Items are taken by exact key match. When total size of pooled items exceeds
+ * the limit, the least recently returned ones are evicted.
+ */
+public class KeyedLruPool<T> {
+
+    public interface EvictionListener<T> {
+        void onEvicted(T item);
+    }
+
+    private static class Entry<T> {
+        final long key;
+        final T item;
+        final long size;
+
+        Entry(long key, T item, long size) {
+            this.key = key;
+            this.item = item;
+            this.size = size;
+        }
+    }
+
+    private final long mMaxSize;
+    private final EvictionListener<T> mEvictionListener;
+    //the least recently returned item goes first
+    private final LinkedList<Entry<T>> mEntries = new LinkedList<>();
+    private long mSize = 0;
+
+    private long mHitCount = 0;
+    private long mMissCount = 0;
+    private long mEvictionCount = 0;
+
+    public KeyedLruPool(long maxSize, EvictionListener<T> evictionListener){
+        mMaxSize = maxSize;
+        mEvictionListener = evictionListener;
+    }
+
+    /**
+     * @return pooled item of given key or null if there is no such one
+     */
+    public synchronized T acquire(long key){
+        Iterator<Entry<T>> iterator = mEntries.descendingIterator();
+        while (iterator.hasNext()){
+            Entry<T> entry = iterator.next();
+            if (entry.key == key){
+                iterator.remove();
+                mSize -= entry.size;
+                mHitCount++;
+                return entry.item;
+            }
+        }
+        mMissCount++;
+        return null;
+    }
+
+    /**
+     * Put item back to pool, it may be evicted immediately if it does not fit
+     */
+    public synchronized void release(long key, T item, long size){
+        if (size > mMaxSize){
+            evict(item);
+            return;
+        }
+        mEntries.addLast(new Entry<>(key, item, size));
+        mSize += size;
+        trimTo(mMaxSize);
+    }
+
+    public synchronized void clear(){
+        trimTo(0);
+    }
+
+    private void trimTo(long maxSize){
+        while (mSize > maxSize && !mEntries.isEmpty()){
+            Entry<T> entry = mEntries.removeFirst();
+            mSize -= entry.size;
+            evict(entry.item);
+        }
+    }
+
+    private void evict(T item){
+        mEvictionCount++;
+        if (mEvictionListener != null){
+            mEvictionListener.onEvicted(item);
+        }
+    }
+
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized int getCount(){
+        return mEntries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+}
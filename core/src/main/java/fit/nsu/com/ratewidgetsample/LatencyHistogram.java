@@ -0,0 +1,105 @@
+package fit.nsu.com.ratewidgetsample;
+
+/**
+ * Histogram of durations with power of two buckets.
+ *
+ * Bucket i counts durations in [2^i, 2^(i+1)) microseconds, bucket 0 also takes
+ * everything below a microsecond. Recording never allocates, so it is fine for frame callbacks.
+ */
+public class LatencyHistogram {
+
+    public final static int BUCKET_COUNT = 32;
+
+    private final long[] mBuckets = new long[BUCKET_COUNT];
+    private long mCount = 0;
+    private long mTotalNanos = 0;
+    private long mMinNanos = Long.MAX_VALUE;
+    private long mMaxNanos = 0;
+
+    public void record(long nanos){
+        if (nanos < 0){
+            nanos = 0;
+        }
+        mBuckets[bucketOf(nanos)]++;
+        mCount++;
+        mTotalNanos += nanos;
+        if (nanos < mMinNanos){
+            mMinNanos = nanos;
+        }
+        if (nanos > mMaxNanos){
+            mMaxNanos = nanos;
+        }
+    }
+
+    static int bucketOf(long nanos){
+        long micros = nanos / 1000;
+        if (micros == 0){
+            return 0;
+        }
+        return Math.min(63 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+    }
+
+    /**
+     * @return lower bound of bucket in nanoseconds
+     */
+    public static long getBucketStartNanos(int bucket){
+        return bucket == 0 ? 0 : (1L << bucket) * 1000;
+    }
+
+    public long getBucketCount(int bucket){
+        return mBuckets[bucket];
+    }
+
+    public long getCount(){
+        return mCount;
+    }
+
+    public long getMinNanos(){
+        return mCount == 0 ? 0 : mMinNanos;
+    }
+
+    public long getMaxNanos(){
+        return mMaxNanos;
+    }
+
+    public long getMeanNanos(){
+        return mCount == 0 ? 0 : mTotalNanos / mCount;
+    }
+
+    /**
+     * @param percentile value in 0..100
+     * @return upper bound of bucket which holds the percentile, clamped by max recorded value
+     */
+    public long getPercentileNanos(double percentile){
+        if (mCount == 0){
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * mCount);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i){
+            seen += mBuckets[i];
+            if (seen >= rank && seen > 0){
+                return i == BUCKET_COUNT - 1 ? mMaxNanos : Math.min(getBucketStartNanos(i + 1), mMaxNanos);
+            }
+        }
+        return mMaxNanos;
+    }
+
+    public void copyTo(LatencyHistogram target){
+        System.arraycopy(mBuckets, 0, target.mBuckets, 0, BUCKET_COUNT);
+        target.mCount = mCount;
+        target.mTotalNanos = mTotalNanos;
+        target.mMinNanos = mMinNanos;
+        target.mMaxNanos = mMaxNanos;
+    }
+
+    public void reset(){
+        for (int i = 0; i < BUCKET_COUNT; ++i){
+            mBuckets[i] = 0;
+        }
+        mCount = 0;
+        mTotalNanos = 0;
+        mMinNanos = Long.MAX_VALUE;
+        mMaxNanos = 0;
+    }
+}
@@ -0,0 +1,88 @@
+package fit.nsu.com.ratewidgetsample;
+
+/**
+ * Keeps only the latest move event of a display frame.
+ *
+ * Touch panels may report moves several times per frame, while widget needs
+ * at most one rate resolution per frame. Counters show how many events were
+ * received, dropped in favour of a newer one, processed on frame and applied.
+ */
+public class MoveEventCoalescer {
+
+    private float mPendingX;
+    private boolean mHasPending = false;
+
+    private long mReceivedCount = 0;
+    private long mCoalescedCount = 0;
+    private long mFrameCount = 0;
+    private long mAppliedCount = 0;
+
+    /**
+     * Remember move event.
+     *
+     * @return true if there was no pending event, so frame callback should be scheduled
+     */
+    public boolean offer(float x){
+        mReceivedCount++;
+        mPendingX = x;
+        if (mHasPending){
+            mCoalescedCount++;
+            return false;
+        }
+        mHasPending = true;
+        return true;
+    }
+
+    public boolean hasPending(){
+        return mHasPending;
+    }
+
+    /**
+     * Take the latest event on frame
+     */
+    public float consume(){
+        mHasPending = false;
+        mFrameCount++;
+        return mPendingX;
+    }
+
+    /**
+     * Drop pending event, e.g. when gesture is cancelled before frame
+     */
+    public void cancel(){
+        if (mHasPending){
+            mHasPending = false;
+            mCoalescedCount++;
+        }
+    }
+
+    /**
+     * Mark that consumed event has changed the rate and caused redraw
+     */
+    public void onApplied(){
+        mAppliedCount++;
+    }
+
+    public long getReceivedCount() {
+        return mReceivedCount;
+    }
+
+    public long getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    public long getAppliedCount() {
+        return mAppliedCount;
+    }
+
+    public void resetCounters(){
+        mReceivedCount = 0;
+        mCoalescedCount = 0;
+        mFrameCount = 0;
+        mAppliedCount = 0;
+    }
+}
@@ -0,0 +1,398 @@
+package fit.nsu.com.ratewidgetsample;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Net promoter score of 0..10 ratings, overall and per question (segment).
+ *
+ * Counts are kept in primitive arrays: histogram of 11 rates overall and one per segment,
+ * segments are found by open addressing on question id, so adding a rating never boxes.
+ * Aggregators of disjoint parts of ratings are {@link #merge merged} into the same result
+ * as of all ratings at once, that is how {@link #readParallel} splits a log between workers.
+ *
+ * Instance is not thread-safe, every worker keeps its own one.
+ */
+public final class NpsAggregator implements RatingSink {
+
+    public final static int MAX_RATE = 10;
+    //rates up to it are detractors, above it up to PASSIVE_MAX are passives, the rest are promoters
+    public final static int DETRACTOR_MAX = 6;
+    public final static int PASSIVE_MAX = 8;
+
+    private final static int RATE_COUNT = MAX_RATE + 1;
+    private final static int INITIAL_TABLE_SIZE = 16;
+    //records read at once, that is all memory reading takes
+    private final static int READ_BUFFER_RECORDS = 8192;
+    //parallel reading does not split parts smaller than that
+    private final static long MIN_PARALLEL_RECORDS = 1 << 18;
+
+    private final long[] mCounts = new long[RATE_COUNT];
+
+    private int mSegmentCount = 0;
+    //question ids in order of appearance
+    private int[] mSegmentIds = new int[INITIAL_TABLE_SIZE / 2];
+    //histogram of segment i takes RATE_COUNT longs from RATE_COUNT * i
+    private long[] mSegmentCounts = new long[INITIAL_TABLE_SIZE / 2 * RATE_COUNT];
+    //hash table of segment index + 1, 0 is empty slot; size is power of two
+    private int[] mTable = new int[INITIAL_TABLE_SIZE];
+
+    public void add(int questionId, int rate){
+        if (rate < 0 || rate > MAX_RATE){
+            throw new IllegalArgumentException("NPS rate should be in [0, " + MAX_RATE + "]: " + rate);
+        }
+        mCounts[rate]++;
+        // new segment may grow arrays, so index is taken before array
+        int index = segmentIndex(questionId);
+        mSegmentCounts[index * RATE_COUNT + rate]++;
+    }
+
+    /**
+     * Aggregate batch drained from {@link RatingOutbox}, so aggregator can be its sink
+     */
+    @Override
+    public void send(RatingBatch batch){
+        for (int i = 0; i < batch.size(); ++i){
+            add(batch.getQuestionId(i), batch.getRate(i));
+        }
+    }
+
+    /**
+     * Add counts of other aggregator, it is left as it is
+     */
+    public void merge(NpsAggregator other){
+        for (int rate = 0; rate < RATE_COUNT; ++rate){
+            mCounts[rate] += other.mCounts[rate];
+        }
+        for (int i = 0; i < other.mSegmentCount; ++i){
+            int offset = segmentIndex(other.mSegmentIds[i]) * RATE_COUNT;
+            int otherOffset = i * RATE_COUNT;
+            for (int rate = 0; rate < RATE_COUNT; ++rate){
+                mSegmentCounts[offset + rate] += other.mSegmentCounts[otherOffset + rate];
+            }
+        }
+    }
+
+    public void reset(){
+        Arrays.fill(mCounts, 0);
+        Arrays.fill(mTable, 0);
+        Arrays.fill(mSegmentCounts, 0);
+        mSegmentCount = 0;
+    }
+
+    /**
+     * @return index of segment, a new empty one is added for unknown id
+     */
+    private int segmentIndex(int questionId){
+        int mask = mTable.length - 1;
+        int slot = mix(questionId) & mask;
+        while (true){
+            int entry = mTable[slot];
+            if (entry == 0){
+                break;
+            }
+            if (mSegmentIds[entry - 1] == questionId){
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int index = mSegmentCount++;
+        if (index == mSegmentIds.length){
+            mSegmentIds = Arrays.copyOf(mSegmentIds, index * 2);
+            mSegmentCounts = Arrays.copyOf(mSegmentCounts, index * 2 * RATE_COUNT);
+        }
+        mSegmentIds[index] = questionId;
+        mTable[slot] = index + 1;
+        // table is kept at most half full, so probes stay short
+        if (mSegmentCount * 2 > mTable.length){
+            rehash(mTable.length * 2);
+        }
+        return index;
+    }
+
+    /**
+     * @return index of segment or -1 if there is no such one
+     */
+    private int findSegment(int questionId){
+        int mask = mTable.length - 1;
+        int slot = mix(questionId) & mask;
+        int entry;
+        while ((entry = mTable[slot]) != 0){
+            if (mSegmentIds[entry - 1] == questionId){
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int size){
+        int[] table = new int[size];
+        int mask = size - 1;
+        for (int i = 0; i < mSegmentCount; ++i){
+            int slot = mix(mSegmentIds[i]) & mask;
+            while (table[slot] != 0){
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+        mTable = table;
+    }
+
+    private static int mix(int key){
+        // question ids are mostly small sequential numbers, spread them over the table
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public long getTotal(){
+        return total(mCounts, 0);
+    }
+
+    public long getCount(int rate){
+        return mCounts[rate];
+    }
+
+    public long getPromoters(){
+        return promoters(mCounts, 0);
+    }
+
+    public long getPassives(){
+        return passives(mCounts, 0);
+    }
+
+    public long getDetractors(){
+        return detractors(mCounts, 0);
+    }
+
+    /**
+     * @return percentage of promoters minus percentage of detractors in [-100, 100], NaN if there are no ratings
+     */
+    public double getScore(){
+        return score(mCounts, 0);
+    }
+
+    public int getSegmentCount(){
+        return mSegmentCount;
+    }
+
+    /**
+     * @param index index of segment in [0, {@link #getSegmentCount()}), segments go in order of appearance
+     */
+    public int getSegmentId(int index){
+        return mSegmentIds[index];
+    }
+
+    /**
+     * @return number of ratings of question, 0 if it has not been rated
+     */
+    public long getSegmentTotal(int questionId){
+        int index = findSegment(questionId);
+        return index < 0 ? 0 : total(mSegmentCounts, index * RATE_COUNT);
+    }
+
+    /**
+     * @param out array of at least {@link #MAX_RATE} + 1 counts
+     * @return out filled with number of ratings of every rate of question
+     */
+    public long[] getSegmentHistogram(int questionId, long[] out){
+        int index = findSegment(questionId);
+        if (index < 0){
+            Arrays.fill(out, 0, RATE_COUNT, 0);
+        } else {
+            System.arraycopy(mSegmentCounts, index * RATE_COUNT, out, 0, RATE_COUNT);
+        }
+        return out;
+    }
+
+    /**
+     * @return score of question, NaN if it has not been rated
+     */
+    public double getSegmentScore(int questionId){
+        int index = findSegment(questionId);
+        return index < 0 ? Double.NaN : score(mSegmentCounts, index * RATE_COUNT);
+    }
+
+    /**
+     * @param out array of at least {@link #MAX_RATE} + 1 counts
+     * @return out filled with number of ratings of every rate
+     */
+    public long[] getHistogram(long[] out){
+        System.arraycopy(mCounts, 0, out, 0, RATE_COUNT);
+        return out;
+    }
+
+    private static long total(long[] counts, int offset){
+        long total = 0;
+        for (int rate = 0; rate < RATE_COUNT; ++rate){
+            total += counts[offset + rate];
+        }
+        return total;
+    }
+
+    private static long detractors(long[] counts, int offset){
+        long sum = 0;
+        for (int rate = 0; rate <= DETRACTOR_MAX; ++rate){
+            sum += counts[offset + rate];
+        }
+        return sum;
+    }
+
+    private static long passives(long[] counts, int offset){
+        long sum = 0;
+        for (int rate = DETRACTOR_MAX + 1; rate <= PASSIVE_MAX; ++rate){
+            sum += counts[offset + rate];
+        }
+        return sum;
+    }
+
+    private static long promoters(long[] counts, int offset){
+        long sum = 0;
+        for (int rate = PASSIVE_MAX + 1; rate <= MAX_RATE; ++rate){
+            sum += counts[offset + rate];
+        }
+        return sum;
+    }
+
+    private static double score(long[] counts, int offset){
+        long total = total(counts, offset);
+        if (total == 0){
+            return Double.NaN;
+        }
+        return 100.0 * (promoters(counts, offset) - detractors(counts, offset)) / total;
+    }
+
+    /**
+     * Aggregate records of {@link RatingOutbox} format from [from, to) of channel in one pass,
+     * memory taken does not depend on size of log
+     */
+    public void read(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_RECORDS * RatingOutbox.RECORD_SIZE);
+        long position = from;
+        while (position < to){
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            while (buffer.hasRemaining()){
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0){
+                    throw new IOException("Unexpected end of rating log at " + (position + buffer.position()));
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()){
+                int questionId = buffer.getInt();
+                int rate = buffer.getInt();
+                // timestamp is not needed for score
+                buffer.position(buffer.position() + 8);
+                if (rate < 0 || rate > MAX_RATE){
+                    throw new IOException("Bad rate " + rate + " in rating log at "
+                            + (position + buffer.position() - RatingOutbox.RECORD_SIZE));
+                }
+                add(questionId, rate);
+            }
+            position += buffer.limit();
+        }
+    }
+
+    /**
+     * Aggregate records of outbox file which have not been delivered yet,
+     * they start at read offset kept in its header
+     */
+    public static NpsAggregator read(File outboxFile) throws IOException {
+        return read(outboxFile, readOutboxOffset(outboxFile));
+    }
+
+    /**
+     * Aggregate log of records written in {@link RatingOutbox} format. For outbox file
+     * use {@link #read(File)}: records before read offset of its header are delivered already.
+     *
+     * @param offset where records start
+     */
+    public static NpsAggregator read(File file, long offset) throws IOException {
+        try (RandomAccessFile log = new RandomAccessFile(file, "r")){
+            FileChannel channel = log.getChannel();
+            NpsAggregator aggregator = new NpsAggregator();
+            aggregator.read(channel, offset, recordsEnd(channel, offset));
+            return aggregator;
+        }
+    }
+
+    /**
+     * Same as {@link #read(File, long)}, but parts of log are aggregated by workers of pool and merged
+     */
+    public static NpsAggregator readParallel(File file, long offset, ForkJoinPool pool) throws IOException {
+        try (RandomAccessFile log = new RandomAccessFile(file, "r")){
+            FileChannel channel = log.getChannel();
+            long end = recordsEnd(channel, offset);
+            return pool.invoke(new ReadTask(channel, offset, (end - offset) / RatingOutbox.RECORD_SIZE));
+        } catch (UncheckedReadException e){
+            throw e.getCause();
+        }
+    }
+
+    private static long readOutboxOffset(File file) throws IOException {
+        try (RandomAccessFile outbox = new RandomAccessFile(file, "r")){
+            // outbox which has not written its header yet is empty
+            return outbox.length() < RatingOutbox.HEADER_SIZE ? RatingOutbox.HEADER_SIZE : outbox.readLong();
+        }
+    }
+
+    private static long recordsEnd(FileChannel channel, long offset) throws IOException {
+        long size = Math.max(channel.size(), offset);
+        // tail of the last record could be lost by crash
+        return size - (size - offset) % RatingOutbox.RECORD_SIZE;
+    }
+
+    private static final class ReadTask extends RecursiveTask<NpsAggregator> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel mChannel;
+        private final long mFrom;
+        private final long mRecordCount;
+
+        ReadTask(FileChannel channel, long from, long recordCount){
+            mChannel = channel;
+            mFrom = from;
+            mRecordCount = recordCount;
+        }
+
+        @Override
+        protected NpsAggregator compute() {
+            if (mRecordCount <= MIN_PARALLEL_RECORDS){
+                NpsAggregator aggregator = new NpsAggregator();
+                try {
+                    // positional reads do not move channel position, so workers share channel
+                    aggregator.read(mChannel, mFrom, mFrom + mRecordCount * RatingOutbox.RECORD_SIZE);
+                } catch (IOException e){
+                    throw new UncheckedReadException(e);
+                }
+                return aggregator;
+            }
+            long half = mRecordCount / 2;
+            ReadTask right = new ReadTask(mChannel, mFrom + half * RatingOutbox.RECORD_SIZE, mRecordCount - half);
+            right.fork();
+            NpsAggregator result = new ReadTask(mChannel, mFrom, half).compute();
+            result.merge(right.join());
+            return result;
+        }
+    }
+
+    private static final class UncheckedReadException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncheckedReadException(IOException cause){
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package fit.nsu.com.ratewidgetsample;
+
+/**
+ * Single animation of the fill position which follows the latest picked rate.
+ *
+ * Position is measured in points, e.g. 2.5 is half way between the third and the fourth point.
+ * Rate picked while animation is running retargets it from the reached position,
+ * so the fill never goes back to the old target and burst of taps does not queue animations.
+ * Every leg is limited by max duration, so scale settles at most that long after the last tap.
+ */
+public final class RateAnimationDriver {
+
+    public final static long DEFAULT_MAX_DURATION_NANOS = 600L * 1000000;
+    // legs shorter than that take the same time, otherwise tiny retarget would be too fast
+    private final static float MIN_DISTANCE = 0.5f;
+
+    private final RateState mState;
+    private long mMaxDurationNanos = DEFAULT_MAX_DURATION_NANOS;
+
+    private boolean mIsRunning = false;
+    private float mFrom;
+    private int mTarget;
+    private float mPosition;
+    private long mStartNanos;
+    private long mDurationNanos;
+    private boolean mAccelerate;
+
+    public RateAnimationDriver(RateState state){
+        mState = state;
+    }
+
+    /**
+     * Leg duration, it grows with log of distance in points, 320 ms for one point, and is bounded by max duration
+     */
+    public long durationNanos(float distance){
+        double millis = (Math.log(Math.max(Math.abs(distance), MIN_DISTANCE)) + 4) * 80;
+        return Math.min((long) (millis * 1000000), mMaxDurationNanos);
+    }
+
+    public void setMaxDurationNanos(long nanos){
+        mMaxDurationNanos = nanos;
+    }
+
+    public long getMaxDurationNanos(){
+        return mMaxDurationNanos;
+    }
+
+    /**
+     * User has picked a rate, state is updated and animation is started or retargeted if needed.
+     *
+     * @return true if animation has been started from rest, so frames should be scheduled
+     */
+    public boolean select(int rate, long nowNanos){
+        boolean wasRunning = mIsRunning;
+        float from = getPosition();
+        if (!mState.select(rate)){
+            return false;
+        }
+        retarget(from, rate, nowNanos);
+        return !wasRunning;
+    }
+
+    private void retarget(float from, int target, long nowNanos){
+        // keep speed when target moves further in the same direction
+        mAccelerate = !mIsRunning || Math.signum(target - from) != Math.signum(mTarget - mFrom);
+        mFrom = from;
+        mTarget = target;
+        mPosition = from;
+        mStartNanos = nowNanos;
+        mDurationNanos = durationNanos(target - from);
+        mIsRunning = true;
+        mState.onAnimationStart(target);
+    }
+
+    /**
+     * Move position to given frame time
+     *
+     * @return true if animation is still running and needs next frame
+     */
+    public boolean onFrame(long frameTimeNanos){
+        if (!mIsRunning){
+            return false;
+        }
+        float t = mDurationNanos <= 0 ? 1f : (float) (frameTimeNanos - mStartNanos) / mDurationNanos;
+        if (t < 1f){
+            t = Math.max(t, 0f);
+            mPosition = mFrom + (mTarget - mFrom) * (mAccelerate ? t * t : t);
+            return true;
+        }
+        mPosition = mTarget;
+        mIsRunning = false;
+        if (mState.onAnimationEnd()){
+            // rate was changed behind our back, catch up with it
+            retarget(mTarget, mState.getCurrentRate(), frameTimeNanos);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Jump to the current rate, e.g. when there is nothing to draw animation on
+     */
+    public void finish(){
+        if (mIsRunning){
+            mIsRunning = false;
+            mState.onAnimationEnd();
+        }
+    }
+
+    /**
+     * @return planned duration of the current leg, from start or the last retarget
+     */
+    public long getLegDurationNanos(){
+        return mDurationNanos;
+    }
+
+    public boolean isRunning(){
+        return mIsRunning;
+    }
+
+    /**
+     * @return fill position in points, {@link RateState#INIT_STATE} if nothing is rated
+     */
+    public float getPosition(){
+        return mIsRunning ? mPosition : mState.getCurrentRate();
+    }
+
+    /**
+     * @return point which should be drawn as selected, there is no one while animation is running
+     */
+    public int getSelected(){
+        return mIsRunning ? RateState.INIT_STATE : mState.getCurrentRate();
+    }
+
+    /**
+     * @return rate animation heads to or current rate if it is not running
+     */
+    public int getTarget(){
+        return mIsRunning ? mTarget : mState.getCurrentRate();
+    }
+}
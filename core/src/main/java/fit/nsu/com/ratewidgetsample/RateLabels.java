@@ -0,0 +1,27 @@
+package fit.nsu.com.ratewidgetsample;
+
+/**
+ * Process-wide table of point labels, so drawing never builds strings.
+ */
+public final class RateLabels {
+
+    private static String[] sLabels = new String[0];
+
+    private RateLabels() {
+    }
+
+    /**
+     * @return array where label of point i is at index i, array may be longer than count
+     */
+    public static synchronized String[] obtain(int count){
+        if (sLabels.length < count){
+            String[] labels = new String[count];
+            System.arraycopy(sLabels, 0, labels, 0, sLabels.length);
+            for (int i = sLabels.length; i < count; ++i){
+                labels[i] = Integer.toString(i + 1);
+            }
+            sLabels = labels;
+        }
+        return sLabels;
+    }
+}
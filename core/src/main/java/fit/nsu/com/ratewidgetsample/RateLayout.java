@@ -0,0 +1,251 @@
+package fit.nsu.com.ratewidgetsample;
+
+/**
+ * Immutable geometry of rate scale: line, points and text positions.
+ *
+ * Layout depends only on view size, number of points and inner point radius,
+ * so identical widgets share one instance through {@link #obtain(int, int, int, int)}.
+ * Class is free of android dependencies so it could be checked on JVM.
+ */
+public final class RateLayout {
+
+    //we need it because world is imperfect and java's float computations too
+    public final static float RADIUS_DELTA = 1f;
+
+    private final static int CACHE_SIZE = 16;
+    //most recently used layout goes first
+    private final static RateLayout[] sCache = new RateLayout[CACHE_SIZE];
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mPointCount;
+
+    private final int mInnerPointRadius;
+    private final int mLineStrokeWidth;
+    private final int mOuterPointRadius;
+    private final float mDeltedOuterPointRadius;
+    private final int mSelectedPointRadius;
+
+    private final float mLineY;
+    private final float mSelectedTextY;
+    private final float mLineStartX;
+    private final float mLineEndX;
+    private final float mStep;
+    private final float[] mPointCenters;
+    private final int mTickStride;
+
+    public RateLayout(int width, int height, int pointCount, int innerPointRadius){
+        if (pointCount < 1){
+            throw new IllegalArgumentException("Scale should have at least one point: " + pointCount);
+        }
+        mWidth = width;
+        mHeight = height;
+        mPointCount = pointCount;
+
+        mInnerPointRadius = innerPointRadius;
+        mLineStrokeWidth = innerPointRadius;
+        mOuterPointRadius = (innerPointRadius << 1);
+        mDeltedOuterPointRadius = mOuterPointRadius + RADIUS_DELTA;
+        mSelectedPointRadius = (mOuterPointRadius << 1);
+
+        mLineY = lineY(height, mSelectedPointRadius);
+        mSelectedTextY = selectedTextY(mLineY, mSelectedPointRadius);
+
+        int offset = mSelectedPointRadius;
+        mLineStartX = offset;
+        mLineEndX = width - offset;
+        mStep = pointCount > 1 ? (mLineEndX - mLineStartX) / (pointCount - 1) : 0f;
+
+        mPointCenters = new float[pointCount];
+        for (int i = 0; i < pointCount; ++i){
+            mPointCenters[i] = getPositionX(i);
+        }
+        // points closer than that merge into solid bar
+        float minTickSpacing = 2 * mDeltedOuterPointRadius + mLineStrokeWidth;
+        mTickStride = tickStride(mStep, minTickSpacing);
+    }
+
+    /**
+     * Layout of the same scale with another height: nothing depends on height but vertical coordinates,
+     * so points and everything built for them, e.g. {@link HitTestIndex}, are shared with source
+     */
+    private RateLayout(RateLayout source, int height){
+        mWidth = source.mWidth;
+        mHeight = height;
+        mPointCount = source.mPointCount;
+
+        mInnerPointRadius = source.mInnerPointRadius;
+        mLineStrokeWidth = source.mLineStrokeWidth;
+        mOuterPointRadius = source.mOuterPointRadius;
+        mDeltedOuterPointRadius = source.mDeltedOuterPointRadius;
+        mSelectedPointRadius = source.mSelectedPointRadius;
+
+        mLineY = lineY(height, mSelectedPointRadius);
+        mSelectedTextY = selectedTextY(mLineY, mSelectedPointRadius);
+
+        mLineStartX = source.mLineStartX;
+        mLineEndX = source.mLineEndX;
+        mStep = source.mStep;
+        mPointCenters = source.mPointCenters;
+        mTickStride = source.mTickStride;
+    }
+
+    private static float lineY(int height, int selectedPointRadius){
+        return ((float)height - (selectedPointRadius << 1) + ((selectedPointRadius >> 1) >> 1));
+    }
+
+    private static float selectedTextY(float lineY, int selectedPointRadius){
+        //Do u not like bits operations? U just don't know how to cook it!
+        return lineY - (selectedPointRadius << 1) + (selectedPointRadius >> 1);
+    }
+
+    /**
+     * @param labelHeight height of selected label above its baseline
+     * @return the lowest view height which fits selected point and its label
+     */
+    public static int getMinHeight(int innerPointRadius, float labelHeight){
+        int selectedPointRadius = innerPointRadius << 2;
+        // both coordinates are measured from the bottom of view of zero height
+        float textY = selectedTextY(lineY(0, selectedPointRadius), selectedPointRadius);
+        return (int) Math.ceil(labelHeight - textY);
+    }
+
+    /**
+     * @return the smallest of 1, 2, 5, 10, 20, 50... strides which keeps drawn points apart
+     */
+    static int tickStride(float step, float minSpacing){
+        if (step <= 0 || step >= minSpacing){
+            return 1;
+        }
+        int[] multipliers = {1, 2, 5};
+        for (int base = 1; base <= Integer.MAX_VALUE / 10; base *= 10){
+            for (int multiplier : multipliers){
+                if (base * multiplier * step >= minSpacing){
+                    return base * multiplier;
+                }
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Take layout from process-wide cache or compute and cache a new one
+     */
+    public static RateLayout obtain(int width, int height, int pointCount, int innerPointRadius){
+        synchronized (sCache) {
+            int i = 0;
+            for (; i < CACHE_SIZE && sCache[i] != null; ++i){
+                if (sCache[i].matches(width, height, pointCount, innerPointRadius)){
+                    break;
+                }
+            }
+            RateLayout layout;
+            if (i < CACHE_SIZE && sCache[i] != null){
+                layout = sCache[i];
+            } else {
+                layout = null;
+                // view is often resized only vertically, e.g. by keyboard or split screen
+                for (int j = 0; j < CACHE_SIZE && sCache[j] != null && layout == null; ++j){
+                    if (sCache[j].matches(width, sCache[j].mHeight, pointCount, innerPointRadius)){
+                        layout = new RateLayout(sCache[j], height);
+                    }
+                }
+                if (layout == null){
+                    layout = new RateLayout(width, height, pointCount, innerPointRadius);
+                }
+                i = Math.min(i, CACHE_SIZE - 1);
+            }
+            System.arraycopy(sCache, 0, sCache, 1, i);
+            sCache[0] = layout;
+            return layout;
+        }
+    }
+
+    public boolean matches(int width, int height, int pointCount, int innerPointRadius){
+        return mWidth == width && mHeight == height
+                && mPointCount == pointCount && mInnerPointRadius == innerPointRadius;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getPointCount() {
+        return mPointCount;
+    }
+
+    public int getInnerPointRadius() {
+        return mInnerPointRadius;
+    }
+
+    public int getLineStrokeWidth() {
+        return mLineStrokeWidth;
+    }
+
+    public int getOuterPointRadius() {
+        return mOuterPointRadius;
+    }
+
+    public float getDeltedOuterPointRadius() {
+        return mDeltedOuterPointRadius;
+    }
+
+    public int getSelectedPointRadius() {
+        return mSelectedPointRadius;
+    }
+
+    public float getLineY() {
+        return mLineY;
+    }
+
+    public float getSelectedTextY() {
+        return mSelectedTextY;
+    }
+
+    public float getLineStartX() {
+        return mLineStartX;
+    }
+
+    public float getLineEndX() {
+        return mLineEndX;
+    }
+
+    public float getStep() {
+        return mStep;
+    }
+
+    /**
+     * Every point gets x from this method, so the last point is exactly at line end
+     * and there is no drift on scales with thousands of points.
+     *
+     * @param position point index, fractional one lies between points
+     */
+    public float getPositionX(float position){
+        if (mPointCount == 1){
+            return mLineStartX;
+        }
+        return mLineStartX + (mLineEndX - mLineStartX) * (position / (mPointCount - 1));
+    }
+
+    /**
+     * @return only every stride-th point is drawn, so as points do not overlap on dense scales
+     */
+    public int getTickStride(){
+        return mTickStride;
+    }
+
+    public float getPointCenter(int index){
+        return mPointCenters[index];
+    }
+
+    /**
+     * @return centers of points. Array is shared between all users of layout, do not modify it.
+     */
+    public float[] getPointCenters() {
+        return mPointCenters;
+    }
+}
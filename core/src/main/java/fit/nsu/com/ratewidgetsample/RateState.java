@@ -0,0 +1,73 @@
+package fit.nsu.com.ratewidgetsample;
+
+/**
+ * Selected rate and animation bookkeeping of rate widget.
+ *
+ * Only one animation runs at once. Rate picked while it is running
+ * retargets it, so animation always heads to the latest rate.
+ */
+public final class RateState {
+
+    public final static int INIT_STATE = -1;
+
+    private int mCurrentRate = INIT_STATE;
+    private boolean mIsAnimationRunning = false;
+    private int mAnimationTarget = INIT_STATE;
+
+    /**
+     * User has picked a rate.
+     *
+     * @return true if animation towards picked rate should be started or running one retargeted
+     */
+    public boolean select(int rate){
+        boolean shouldAnimate = rate != (mIsAnimationRunning ? mAnimationTarget : mCurrentRate);
+        mCurrentRate = rate;
+        return shouldAnimate;
+    }
+
+    public void onAnimationStart(int targetRate){
+        mIsAnimationRunning = true;
+        mAnimationTarget = targetRate;
+    }
+
+    /**
+     * Running animation has ended.
+     *
+     * @return true if rate has been changed without retargeting, so animation from
+     * {@link #getAnimationTarget()} to {@link #getCurrentRate()} should be started
+     */
+    public boolean onAnimationEnd(){
+        mIsAnimationRunning = false;
+        return mCurrentRate != mAnimationTarget;
+    }
+
+    /**
+     * Set rate without animation, e.g. when state is restored
+     */
+    public void restore(int rate){
+        mCurrentRate = rate;
+        mAnimationTarget = rate;
+    }
+
+    public void reset(){
+        mCurrentRate = INIT_STATE;
+        mAnimationTarget = INIT_STATE;
+        mIsAnimationRunning = false;
+    }
+
+    public int getCurrentRate() {
+        return mCurrentRate;
+    }
+
+    public int getAnimationTarget() {
+        return mAnimationTarget;
+    }
+
+    public boolean isAnimationRunning() {
+        return mIsAnimationRunning;
+    }
+
+    public boolean isRated(){
+        return mCurrentRate != INIT_STATE;
+    }
+}
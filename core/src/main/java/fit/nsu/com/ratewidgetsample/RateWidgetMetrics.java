@@ -0,0 +1,303 @@
+package fit.nsu.com.ratewidgetsample;
+
+/**
+ * Performance counters of a rate widget: animation frames, draw time,
+ * bitmap allocations, tap latency and time to the first frame.
+ *
+ * Widget records into its own instance on main thread, {@link #snapshot()}
+ * gives a copy which can be sent to telemetry from any thread.
+ */
+public class RateWidgetMetrics {
+
+    // frame is late if it comes that much later than expected
+    private final static float LATE_FRAME_FACTOR = 1.5f;
+    private final static long DEFAULT_FRAME_INTERVAL_NANOS = 1000000000L / 60;
+
+    private long mFrameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+
+    private final LatencyHistogram mDrawTime = new LatencyHistogram();
+    private final LatencyHistogram mFrameInterval = new LatencyHistogram();
+    private final LatencyHistogram mAnimationOverrun = new LatencyHistogram();
+    private final LatencyHistogram mTapToSelect = new LatencyHistogram();
+    private final LatencyHistogram mTapToDraw = new LatencyHistogram();
+
+    private long mAnimationCount = 0;
+    private long mFrameCount = 0;
+    private long mLateFrameCount = 0;
+    private long mMissedFrameCount = 0;
+    private long mBitmapAllocationCount = 0;
+    private long mBitmapAllocationBytes = 0;
+    private long mTimeToFirstFrameNanos = 0;
+    private long mFirstFrameDrawNanos = 0;
+
+    // running animation
+    private boolean mIsAnimating = false;
+    private long mAnimationStartNanos;
+    private long mLastFrameNanos;
+
+    // the last finished animation
+    private long mLastPlannedDurationNanos = 0;
+    private long mLastActualDurationNanos = 0;
+    private int mLastFrameCount = 0;
+    private int mLastLateFrameCount = 0;
+    private int mLastMissedFrameCount = 0;
+    private long mPlannedDurationNanos;
+    private int mCurrentFrameCount;
+    private int mCurrentLateFrameCount;
+    private int mCurrentMissedFrameCount;
+
+    /**
+     * @param nanos display refresh interval, frames are counted as late and missed against it
+     */
+    public void setFrameIntervalNanos(long nanos){
+        mFrameIntervalNanos = nanos > 0 ? nanos : DEFAULT_FRAME_INTERVAL_NANOS;
+    }
+
+    public long getFrameIntervalNanos(){
+        return mFrameIntervalNanos;
+    }
+
+    public void onAnimationStart(long plannedDurationNanos, long nowNanos){
+        mIsAnimating = true;
+        mAnimationCount++;
+        mAnimationStartNanos = nowNanos;
+        mLastFrameNanos = nowNanos;
+        mPlannedDurationNanos = plannedDurationNanos;
+        mCurrentFrameCount = 0;
+        mCurrentLateFrameCount = 0;
+        mCurrentMissedFrameCount = 0;
+    }
+
+    /**
+     * Running animation has been turned to another target
+     *
+     * @param remainingNanos planned duration of the new leg
+     */
+    public void onAnimationRetarget(long remainingNanos, long nowNanos){
+        if (mIsAnimating){
+            mPlannedDurationNanos = nowNanos - mAnimationStartNanos + remainingNanos;
+        }
+    }
+
+    /**
+     * Animation tick has been rendered
+     *
+     * @param drawNanos time spent on rendering of the tick
+     */
+    public void onAnimationFrame(long nowNanos, long drawNanos){
+        mDrawTime.record(drawNanos);
+        if (!mIsAnimating){
+            return;
+        }
+        long interval = nowNanos - mLastFrameNanos;
+        mLastFrameNanos = nowNanos;
+        mFrameCount++;
+        mCurrentFrameCount++;
+        if (mCurrentFrameCount == 1){
+            // first tick may wait for the next vsync, it is not a frame interval
+            return;
+        }
+        mFrameInterval.record(interval);
+        if (interval > mFrameIntervalNanos * LATE_FRAME_FACTOR){
+            int missed = (int) ((interval + mFrameIntervalNanos / 2) / mFrameIntervalNanos) - 1;
+            mLateFrameCount++;
+            mCurrentLateFrameCount++;
+            mMissedFrameCount += missed;
+            mCurrentMissedFrameCount += missed;
+        }
+    }
+
+    /**
+     * Frame has been rendered outside of animation, e.g. direct draw of settled state
+     */
+    public void onDraw(long drawNanos){
+        mDrawTime.record(drawNanos);
+    }
+
+    public void onAnimationEnd(long nowNanos){
+        if (!mIsAnimating){
+            return;
+        }
+        mIsAnimating = false;
+        mLastPlannedDurationNanos = mPlannedDurationNanos;
+        mLastActualDurationNanos = nowNanos - mAnimationStartNanos;
+        mLastFrameCount = mCurrentFrameCount;
+        mLastLateFrameCount = mCurrentLateFrameCount;
+        mLastMissedFrameCount = mCurrentMissedFrameCount;
+        mAnimationOverrun.record(mLastActualDurationNanos - mLastPlannedDurationNanos);
+    }
+
+    public void onBitmapAllocated(long bytes){
+        mBitmapAllocationCount++;
+        mBitmapAllocationBytes += bytes;
+    }
+
+    /**
+     * @param nanos time from touch event to rate selection
+     */
+    public void onTapSelected(long nanos){
+        mTapToSelect.record(nanos);
+    }
+
+    /**
+     * @param nanos time from touch event to the first frame showing new rate
+     */
+    public void onTapDrawn(long nanos){
+        mTapToDraw.record(nanos);
+    }
+
+    /**
+     * Scale has been drawn for the first time since widget was attached
+     *
+     * @param sinceAttachNanos time from attaching to window to the end of the first draw
+     * @param drawNanos time the first draw took on main thread
+     */
+    public void onFirstFrame(long sinceAttachNanos, long drawNanos){
+        mTimeToFirstFrameNanos = sinceAttachNanos;
+        mFirstFrameDrawNanos = drawNanos;
+    }
+
+    public boolean isAnimating(){
+        return mIsAnimating;
+    }
+
+    /**
+     * @return time spent rendering animation ticks and direct frames
+     */
+    public LatencyHistogram getDrawTime(){
+        return mDrawTime;
+    }
+
+    public LatencyHistogram getFrameInterval(){
+        return mFrameInterval;
+    }
+
+    /**
+     * @return how much longer than planned animations ran, shorter ones are counted in the first bucket
+     */
+    public LatencyHistogram getAnimationOverrun(){
+        return mAnimationOverrun;
+    }
+
+    public LatencyHistogram getTapToSelect(){
+        return mTapToSelect;
+    }
+
+    public LatencyHistogram getTapToDraw(){
+        return mTapToDraw;
+    }
+
+    public long getAnimationCount(){
+        return mAnimationCount;
+    }
+
+    public long getFrameCount(){
+        return mFrameCount;
+    }
+
+    public long getLateFrameCount(){
+        return mLateFrameCount;
+    }
+
+    public long getMissedFrameCount(){
+        return mMissedFrameCount;
+    }
+
+    public long getBitmapAllocationCount(){
+        return mBitmapAllocationCount;
+    }
+
+    public long getBitmapAllocationBytes(){
+        return mBitmapAllocationBytes;
+    }
+
+    /**
+     * @return time from attaching to window to the first drawn scale, 0 if it has not been drawn
+     */
+    public long getTimeToFirstFrameNanos(){
+        return mTimeToFirstFrameNanos;
+    }
+
+    /**
+     * @return time main thread spent on the first draw of scale, 0 if it has not been drawn
+     */
+    public long getFirstFrameDrawNanos(){
+        return mFirstFrameDrawNanos;
+    }
+
+    public long getLastPlannedDurationNanos(){
+        return mLastPlannedDurationNanos;
+    }
+
+    public long getLastActualDurationNanos(){
+        return mLastActualDurationNanos;
+    }
+
+    public int getLastFrameCount(){
+        return mLastFrameCount;
+    }
+
+    public int getLastLateFrameCount(){
+        return mLastLateFrameCount;
+    }
+
+    public int getLastMissedFrameCount(){
+        return mLastMissedFrameCount;
+    }
+
+    /**
+     * @return copy of all counters, running animation is not included
+     */
+    public RateWidgetMetrics snapshot(){
+        RateWidgetMetrics copy = new RateWidgetMetrics();
+        copyTo(copy);
+        return copy;
+    }
+
+    /**
+     * Copy counters into existing instance, so periodic reporting does not allocate
+     */
+    public void copyTo(RateWidgetMetrics target){
+        target.mFrameIntervalNanos = mFrameIntervalNanos;
+        mDrawTime.copyTo(target.mDrawTime);
+        mFrameInterval.copyTo(target.mFrameInterval);
+        mAnimationOverrun.copyTo(target.mAnimationOverrun);
+        mTapToSelect.copyTo(target.mTapToSelect);
+        mTapToDraw.copyTo(target.mTapToDraw);
+        target.mAnimationCount = mAnimationCount;
+        target.mFrameCount = mFrameCount;
+        target.mLateFrameCount = mLateFrameCount;
+        target.mMissedFrameCount = mMissedFrameCount;
+        target.mBitmapAllocationCount = mBitmapAllocationCount;
+        target.mBitmapAllocationBytes = mBitmapAllocationBytes;
+        target.mTimeToFirstFrameNanos = mTimeToFirstFrameNanos;
+        target.mFirstFrameDrawNanos = mFirstFrameDrawNanos;
+        target.mLastPlannedDurationNanos = mLastPlannedDurationNanos;
+        target.mLastActualDurationNanos = mLastActualDurationNanos;
+        target.mLastFrameCount = mLastFrameCount;
+        target.mLastLateFrameCount = mLastLateFrameCount;
+        target.mLastMissedFrameCount = mLastMissedFrameCount;
+    }
+
+    public void reset(){
+        mDrawTime.reset();
+        mFrameInterval.reset();
+        mAnimationOverrun.reset();
+        mTapToSelect.reset();
+        mTapToDraw.reset();
+        mAnimationCount = 0;
+        mFrameCount = 0;
+        mLateFrameCount = 0;
+        mMissedFrameCount = 0;
+        mBitmapAllocationCount = 0;
+        mBitmapAllocationBytes = 0;
+        mTimeToFirstFrameNanos = 0;
+        mFirstFrameDrawNanos = 0;
+        mIsAnimating = false;
+        mLastPlannedDurationNanos = 0;
+        mLastActualDurationNanos = 0;
+        mLastFrameCount = 0;
+        mLastLateFrameCount = 0;
+        mLastMissedFrameCount = 0;
+    }
+}
@@ -0,0 +1,56 @@
+package fit.nsu.com.ratewidgetsample;
+
+/**
+ * Ratings handed to {@link RatingSink} at once, kept in primitive arrays.
+ * Instance is reused between batches, so sink must not keep it.
+ */
+public final class RatingBatch {
+
+    private final int[] mQuestionIds;
+    private final int[] mRates;
+    private final long[] mTimestamps;
+    private int mSize = 0;
+
+    public RatingBatch(int capacity){
+        mQuestionIds = new int[capacity];
+        mRates = new int[capacity];
+        mTimestamps = new long[capacity];
+    }
+
+    void add(int questionId, int rate, long timestamp){
+        mQuestionIds[mSize] = questionId;
+        mRates[mSize] = rate;
+        mTimestamps[mSize] = timestamp;
+        mSize++;
+    }
+
+    void clear(){
+        mSize = 0;
+    }
+
+    public int size(){
+        return mSize;
+    }
+
+    public int capacity(){
+        return mRates.length;
+    }
+
+    public int getQuestionId(int index){
+        return mQuestionIds[index];
+    }
+
+    /**
+     * @return index of selected point, e.g. 0..10 for NPS question
+     */
+    public int getRate(int index){
+        return mRates[index];
+    }
+
+    /**
+     * @return millis since epoch when rate was picked
+     */
+    public long getTimestamp(int index){
+        return mTimestamps[index];
+    }
+}
@@ -0,0 +1,186 @@
+package fit.nsu.com.ratewidgetsample;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Durable append-only log of ratings waiting to be sent.
+ *
+ * File starts with 8 bytes offset of the first record which has not been
+ * delivered yet, fixed size records follow it. Appends are buffered and
+ * synced to disk in groups, a torn record at the end of file after crash
+ * is ignored. When everything is delivered, file is truncated back to header.
+ * Read offset past the end of header-only file means that drain was interrupted right after it.
+ *
+ * File is opened lazily, so instance can be created on main thread and used on a background one.
+ */
+public class RatingOutbox implements Closeable {
+
+    // question id, rate, timestamp
+    public final static int RECORD_SIZE = 4 + 4 + 8;
+    // records start after it
+    public final static int HEADER_SIZE = 8;
+
+    private final File mFile;
+    private final int mSyncEvery;
+
+    private RandomAccessFile mRandomAccessFile;
+    private FileChannel mChannel;
+    private ByteBuffer mWriteBuffer;
+    private final ByteBuffer mHeaderBuffer = ByteBuffer.allocate(HEADER_SIZE);
+
+    //offset of the first undelivered record
+    private long mReadOffset;
+    //end of records already written to file
+    private long mWriteOffset;
+
+    /**
+     * @param syncEvery number of appended records which are written and synced together
+     */
+    public RatingOutbox(File file, int syncEvery){
+        if (syncEvery < 1){
+            throw new IllegalArgumentException("syncEvery should be positive: " + syncEvery);
+        }
+        mFile = file;
+        mSyncEvery = syncEvery;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (mChannel != null){
+            return;
+        }
+        mRandomAccessFile = new RandomAccessFile(mFile, "rw");
+        mChannel = mRandomAccessFile.getChannel();
+        mWriteBuffer = ByteBuffer.allocateDirect(mSyncEvery * RECORD_SIZE);
+
+        long size = mChannel.size();
+        if (size < HEADER_SIZE){
+            writeReadOffset(HEADER_SIZE);
+            mWriteOffset = HEADER_SIZE;
+        } else {
+            mHeaderBuffer.clear();
+            readFully(mHeaderBuffer, 0);
+            mReadOffset = mHeaderBuffer.getLong(0);
+            // tail of the last record could be lost by crash
+            mWriteOffset = size - (size - HEADER_SIZE) % RECORD_SIZE;
+            if (mReadOffset > mWriteOffset && mWriteOffset == HEADER_SIZE){
+                // crash after full drain has truncated file but before header was reset,
+                // everything has been delivered
+                writeReadOffset(HEADER_SIZE);
+            } else if (mReadOffset < HEADER_SIZE || mReadOffset > mWriteOffset){
+                throw new IOException("Corrupted outbox " + mFile + ": read offset " + mReadOffset);
+            }
+        }
+    }
+
+    public synchronized void append(int questionId, int rate, long timestamp) throws IOException {
+        ensureOpen();
+        if (mWriteBuffer.remaining() < RECORD_SIZE){
+            // previous flush has failed
+            flush();
+        }
+        mWriteBuffer.putInt(questionId).putInt(rate).putLong(timestamp);
+        if (!mWriteBuffer.hasRemaining()){
+            flush();
+        }
+    }
+
+    /**
+     * Write buffered records and sync them to disk
+     */
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        if (mWriteBuffer.position() == 0){
+            return;
+        }
+        mWriteBuffer.flip();
+        try {
+            while (mWriteBuffer.hasRemaining()){
+                mWriteOffset += mChannel.write(mWriteBuffer, mWriteOffset);
+            }
+        } finally {
+            // keep whatever was not written for the next attempt
+            mWriteBuffer.compact();
+        }
+        mChannel.force(false);
+    }
+
+    /**
+     * Send all pending records to sink in batches. Delivered records are removed
+     * from outbox after every batch, so failed drain is resumed from the failed batch.
+     *
+     * @return number of delivered records
+     */
+    public synchronized int drain(RatingSink sink, int batchSize) throws IOException {
+        flush();
+        RatingBatch batch = new RatingBatch(batchSize);
+        ByteBuffer readBuffer = ByteBuffer.allocate(batchSize * RECORD_SIZE);
+        int delivered = 0;
+        while (mReadOffset < mWriteOffset){
+            readBuffer.clear();
+            readBuffer.limit((int) Math.min(readBuffer.capacity(), mWriteOffset - mReadOffset));
+            readFully(readBuffer, mReadOffset);
+            readBuffer.flip();
+
+            batch.clear();
+            while (readBuffer.hasRemaining()){
+                batch.add(readBuffer.getInt(), readBuffer.getInt(), readBuffer.getLong());
+            }
+            sink.send(batch);
+
+            writeReadOffset(mReadOffset + (long) batch.size() * RECORD_SIZE);
+            delivered += batch.size();
+        }
+        if (delivered > 0){
+            // everything is delivered, so log can start from scratch. File is truncated before header
+            // is reset, so a crash in between never brings delivered records back, see ensureOpen
+            mChannel.truncate(HEADER_SIZE);
+            mWriteOffset = HEADER_SIZE;
+            writeReadOffset(HEADER_SIZE);
+        }
+        return delivered;
+    }
+
+    /**
+     * @return number of records which have not been delivered yet
+     */
+    public synchronized long getPendingCount() throws IOException {
+        ensureOpen();
+        return (mWriteOffset - mReadOffset) / RECORD_SIZE + mWriteBuffer.position() / RECORD_SIZE;
+    }
+
+    private void writeReadOffset(long offset) throws IOException {
+        mHeaderBuffer.clear();
+        mHeaderBuffer.putLong(0, offset);
+        while (mHeaderBuffer.hasRemaining()){
+            mChannel.write(mHeaderBuffer, mHeaderBuffer.position());
+        }
+        mChannel.force(false);
+        mReadOffset = offset;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()){
+            int read = mChannel.read(buffer, position);
+            if (read < 0){
+                throw new IOException("Unexpected end of outbox " + mFile);
+            }
+            position += read;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (mChannel == null){
+            return;
+        }
+        flush();
+        mRandomAccessFile.close();
+        mRandomAccessFile = null;
+        mChannel = null;
+    }
+}
@@ -0,0 +1,15 @@
+package fit.nsu.com.ratewidgetsample;
+
+import java.io.IOException;
+
+/**
+ * Destination of collected ratings, e.g. survey backend
+ */
+public interface RatingSink {
+
+    /**
+     * Deliver ratings. Batch is considered delivered only if method returns normally,
+     * otherwise the same ratings will be sent again on next drain.
+     */
+    void send(RatingBatch batch) throws IOException;
+}
@@ -0,0 +1,20 @@
+package fit.nsu.com.ratewidgetsample;
+
+/**
+ * Drawing surface of rate scale. It lets {@link ScaleRenderer} be used
+ * with android canvas as well as with any other backend.
+ */
+public interface ScaleCanvas {
+
+    void drawLine(float startX, float stopX, float y, float strokeWidth, int color);
+
+    void drawCircle(float centerX, float centerY, float radius, int color);
+
+    /**
+     * Draw label horizontally centered by given x
+     *
+     * @param index index of point the label belongs to, backends may cache label metrics by it
+     * @param selected selected labels are bigger and bold
+     */
+    void drawLabel(int index, String text, float centerX, float baselineY, boolean selected, int color);
+}
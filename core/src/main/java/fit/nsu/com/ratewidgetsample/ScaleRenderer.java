@@ -0,0 +1,171 @@
+package fit.nsu.com.ratewidgetsample;
+
+/**
+ * Draws the whole rate scale from state: how far line is filled and which point is selected.
+ *
+ * Unlike incremental animation drawing it needs no previous frame,
+ * so it is used both for building backing bitmap and for direct drawing.
+ */
+public final class ScaleRenderer {
+
+    /**
+     * Fill position of scale without any filled part
+     */
+    public final static float NO_FILL = Float.NEGATIVE_INFINITY;
+
+    private final RateLayout mLayout;
+    private final String[] mLabels;
+    private final int mSelectedColor;
+    private final int mSimpleColor;
+    private final int mBackgroundColor;
+    private final int mSimpleTextColor;
+    private final float mSimpleTextY;
+
+    public ScaleRenderer(RateLayout layout, String[] labels, int selectedColor, int simpleColor,
+                         int backgroundColor, int simpleTextColor, float simpleTextY){
+        mLayout = layout;
+        mLabels = labels;
+        mSelectedColor = selectedColor;
+        mSimpleColor = simpleColor;
+        mBackgroundColor = backgroundColor;
+        mSimpleTextColor = simpleTextColor;
+        mSimpleTextY = simpleTextY;
+    }
+
+    /**
+     * @return fill position of settled rate
+     */
+    public static float fillX(RateLayout layout, int rate){
+        return rate == RateState.INIT_STATE ? NO_FILL : layout.getPointCenter(rate);
+    }
+
+    /**
+     * @param position fill position in points, may be between points while animation is running
+     */
+    public static float fillXAt(RateLayout layout, float position){
+        return position < 0 ? NO_FILL : layout.getPositionX(position);
+    }
+
+    /**
+     * @param fillX x where filled part of line ends, points up to it are filled
+     * @param selected index of point drawn as selected or {@link RateState#INIT_STATE} for none
+     */
+    public void draw(ScaleCanvas canvas, float fillX, int selected){
+        draw(canvas, fillX, selected, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Draw only points which touch [clipLeft, clipRight], the rest of scale is drawn as a whole anyway.
+     * Dense scales get only every {@link RateLayout#getTickStride()}-th point and the last one.
+     */
+    public void draw(ScaleCanvas canvas, float fillX, int selected, float clipLeft, float clipRight){
+        drawBase(canvas, fillX, clipLeft, clipRight);
+        drawOverlay(canvas, selected);
+    }
+
+    /**
+     * Draw line and points without any labels, that is what pre-rendered scales keep
+     */
+    public void drawBase(ScaleCanvas canvas, float fillX, float clipLeft, float clipRight){
+        RateLayout layout = mLayout;
+        float lineY = layout.getLineY();
+
+        canvas.drawLine(layout.getLineStartX(), layout.getLineEndX(), lineY, layout.getLineStrokeWidth(), mSimpleColor);
+        if (fillX > layout.getLineStartX()){
+            canvas.drawLine(layout.getLineStartX(), Math.min(fillX, layout.getLineEndX()), lineY,
+                    layout.getLineStrokeWidth(), mSelectedColor);
+        }
+        drawPoints(canvas, fillX, clipLeft, clipRight);
+    }
+
+    /**
+     * Draw points which cross fillX. Scale composed of empty and filled halves split
+     * at fillX is the same as drawn by {@link #drawBase} after that.
+     */
+    public void drawFillEdge(ScaleCanvas canvas, float fillX){
+        if (fillX != NO_FILL){
+            drawPoints(canvas, fillX, fillX, fillX);
+        }
+    }
+
+    private void drawPoints(ScaleCanvas canvas, float fillX, float clipLeft, float clipRight){
+        RateLayout layout = mLayout;
+        float lineY = layout.getLineY();
+        float[] centers = layout.getPointCenters();
+        int lastPoint = layout.getPointCount() - 1;
+
+        int stride = layout.getTickStride();
+        int first = 0;
+        int last = lastPoint;
+        if (layout.getStep() > 0){
+            // antialiased edge of point may take one more pixel
+            float reach = layout.getDeltedOuterPointRadius();
+            if (clipLeft > Float.NEGATIVE_INFINITY){
+                first = (int) Math.max(0, Math.ceil((clipLeft - reach - layout.getLineStartX()) / layout.getStep()));
+            }
+            if (clipRight < Float.POSITIVE_INFINITY){
+                last = (int) Math.min(lastPoint, Math.floor((clipRight + reach - layout.getLineStartX()) / layout.getStep()));
+            }
+        }
+        // the last point is always drawn, so tick which is too close to it is skipped
+        int lastTick = Math.min(last, lastPoint - stride);
+        for (int i = (first + stride - 1) / stride * stride; i <= lastTick; i += stride){
+            drawPoint(canvas, centers[i], lineY, fillX);
+        }
+        if (last == lastPoint && first <= lastPoint){
+            drawPoint(canvas, centers[lastPoint], lineY, fillX);
+        }
+    }
+
+    /**
+     * Draw labels and selected point on top of {@link #drawBase} result
+     */
+    public void drawOverlay(ScaleCanvas canvas, int selected){
+        RateLayout layout = mLayout;
+        float[] centers = layout.getPointCenters();
+        int lastPoint = layout.getPointCount() - 1;
+
+        if (selected != 0){
+            canvas.drawLabel(0, mLabels[0], centers[0], mSimpleTextY, false, mSimpleTextColor);
+        }
+        if (selected != lastPoint && lastPoint != 0){
+            canvas.drawLabel(lastPoint, mLabels[lastPoint], centers[lastPoint], mSimpleTextY, false, mSimpleTextColor);
+        }
+
+        if (selected != RateState.INIT_STATE){
+            canvas.drawCircle(centers[selected], layout.getLineY(), layout.getSelectedPointRadius(), mSelectedColor);
+            canvas.drawLabel(selected, mLabels[selected], centers[selected], layout.getSelectedTextY(), true, mSelectedColor);
+        }
+    }
+
+    private void drawPoint(ScaleCanvas canvas, float x, float y, float fillX){
+        if (x <= fillX){
+            canvas.drawCircle(x, y, mLayout.getOuterPointRadius(), mSelectedColor);
+        } else {
+            canvas.drawCircle(x, y, mLayout.getOuterPointRadius(), mSimpleColor);
+            canvas.drawCircle(x, y, mLayout.getInnerPointRadius(), mBackgroundColor);
+        }
+    }
+
+    public int getSelectedColor() {
+        return mSelectedColor;
+    }
+
+    public int getSimpleColor() {
+        return mSimpleColor;
+    }
+
+    public int getBackgroundColor() {
+        return mBackgroundColor;
+    }
+
+    public RateLayout getLayout() {
+        return mLayout;
+    }
+
+    public boolean isBuiltFor(RateLayout layout, int selectedColor, int simpleColor,
+                              int backgroundColor, float simpleTextY){
+        return mLayout == layout && mSelectedColor == selectedColor && mSimpleColor == simpleColor
+                && mBackgroundColor == backgroundColor && mSimpleTextY == simpleTextY;
+    }
+}
@@ -0,0 +1,263 @@
+package fit.nsu.com.ratewidgetsample;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+/**
+ * Rates of all questions of a survey kept in a file, so they outlive process death.
+ *
+ * File has two slots of fixed size, snapshots are written to them in turn, so a write torn
+ * by crash spoils only its own slot and the previous snapshot is still in the other one.
+ * Slot is a header of magic, sequence number, question count and CRC32 of all of them
+ * but magic and of rates, then 4 bytes rate of every question follow. Rate of question which is
+ * still animating is the rate it goes to, so interrupted animation is restored settled.
+ *
+ * Rates submitted faster than disk takes them are coalesced, only the latest ones are written.
+ * Snapshot is read through memory mapping, it costs about nothing for a survey of thousand questions.
+ */
+public class SurveySnapshotStore implements Closeable {
+
+    // magic, sequence, question count, crc
+    public final static int SLOT_HEADER_SIZE = 4 + 8 + 4 + 4;
+    public final static int RATE_SIZE = 4;
+    private final static int MAGIC = 0x53525653;
+    private final static int CRC_OFFSET = 16;
+
+    private final File mFile;
+    private final int mCapacity;
+    private final int mSlotSize;
+
+    private RandomAccessFile mRandomAccessFile;
+    private FileChannel mChannel;
+    private ByteBuffer mSlotBuffer;
+    //pending rates taken by the write
+    private final int[] mWriteRates;
+    private final CRC32 mCrc = new CRC32();
+    //sequence number of the latest valid snapshot in file, 0 if there is none
+    private long mSequence = -1;
+
+    //rates waiting for background write, guarded by itself
+    private final int[] mPending;
+    private int mPendingCount = 0;
+    private boolean mHasPending = false;
+    private boolean mIsWriteScheduled = false;
+    private long mSubmittedCount = 0;
+    private long mWrittenCount = 0;
+    private volatile IOException mWriteError;
+
+    /**
+     * @param capacity the largest number of questions, it fixes size of slots, so it must not change for file
+     */
+    public SurveySnapshotStore(File file, int capacity){
+        if (capacity < 0){
+            throw new IllegalArgumentException("Capacity should not be negative: " + capacity);
+        }
+        mFile = file;
+        mCapacity = capacity;
+        mSlotSize = SLOT_HEADER_SIZE + capacity * RATE_SIZE;
+        mPending = new int[capacity];
+        mWriteRates = new int[capacity];
+    }
+
+    /**
+     * @return rates of the latest complete snapshot, null if nothing has been written or both slots are torn
+     */
+    public synchronized int[] read() throws IOException {
+        if (!mFile.exists()){
+            mSequence = 0;
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "r")){
+            FileChannel channel = file.getChannel();
+            long size = Math.min(channel.size(), 2L * mSlotSize);
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int latest = -1;
+            long latestSequence = 0;
+            for (int slot = 0; slot < 2; slot++){
+                long sequence = validSequence(map, slot);
+                if (sequence > latestSequence){
+                    latest = slot;
+                    latestSequence = sequence;
+                }
+            }
+            mSequence = latestSequence;
+            if (latest < 0){
+                return null;
+            }
+            int offset = latest * mSlotSize;
+            int[] rates = new int[map.getInt(offset + 12)];
+            map.position(offset + SLOT_HEADER_SIZE);
+            map.asIntBuffer().get(rates);
+            return rates;
+        }
+    }
+
+    /**
+     * @return sequence number of snapshot in slot or 0 if slot is torn or empty
+     */
+    private long validSequence(ByteBuffer map, int slot){
+        int offset = slot * mSlotSize;
+        if (map.limit() < offset + SLOT_HEADER_SIZE || map.getInt(offset) != MAGIC){
+            return 0;
+        }
+        int count = map.getInt(offset + 12);
+        if (count < 0 || count > mCapacity || map.limit() < offset + SLOT_HEADER_SIZE + count * RATE_SIZE){
+            return 0;
+        }
+        // CRC32.update(ByteBuffer) needs Android 8, so bytes are copied from mapping
+        byte[] bytes = new byte[SLOT_HEADER_SIZE + count * RATE_SIZE];
+        map.position(offset);
+        map.get(bytes);
+        mCrc.reset();
+        mCrc.update(bytes, 4, CRC_OFFSET - 4);
+        mCrc.update(bytes, SLOT_HEADER_SIZE, count * RATE_SIZE);
+        if ((int) mCrc.getValue() != map.getInt(offset + CRC_OFFSET)){
+            return 0;
+        }
+        return map.getLong(offset + 4);
+    }
+
+    /**
+     * Write snapshot to the slot which does not hold the latest one and sync it to disk
+     */
+    public synchronized void write(int[] rates, int count) throws IOException {
+        if (count > mCapacity){
+            throw new IllegalArgumentException("Survey of " + count + " questions does not fit capacity " + mCapacity);
+        }
+        ensureOpen();
+        long sequence = mSequence + 1;
+        mSlotBuffer.clear();
+        mSlotBuffer.putInt(MAGIC).putLong(sequence).putInt(count).putInt(0);
+        for (int i = 0; i < count; i++){
+            mSlotBuffer.putInt(rates[i]);
+        }
+        byte[] bytes = mSlotBuffer.array();
+        mCrc.reset();
+        mCrc.update(bytes, 4, CRC_OFFSET - 4);
+        mCrc.update(bytes, SLOT_HEADER_SIZE, count * RATE_SIZE);
+        mSlotBuffer.putInt(CRC_OFFSET, (int) mCrc.getValue());
+        mSlotBuffer.flip();
+
+        // slot of the latest snapshot is (sequence - 1) % 2, it is not touched
+        long position = (sequence % 2) * mSlotSize;
+        while (mSlotBuffer.hasRemaining()){
+            mChannel.write(mSlotBuffer, position + mSlotBuffer.position());
+        }
+        mChannel.force(false);
+        mSequence = sequence;
+        mWrittenCount++;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (mSequence < 0){
+            // sequence of file is needed not to overwrite the latest snapshot
+            read();
+        }
+        if (mChannel != null){
+            return;
+        }
+        mRandomAccessFile = new RandomAccessFile(mFile, "rw");
+        mChannel = mRandomAccessFile.getChannel();
+        mSlotBuffer = ByteBuffer.allocate(mSlotSize);
+    }
+
+    /**
+     * Remember rates and write them on executor. Rates submitted before the write has started
+     * replace previous ones, so a burst of taps is written once. Caller may reuse array right away.
+     * Failed write is kept in {@link #getWriteError()} and retried by the next submit.
+     */
+    public void submit(int[] rates, int count, Executor executor){
+        if (count > mCapacity){
+            throw new IllegalArgumentException("Survey of " + count + " questions does not fit capacity " + mCapacity);
+        }
+        synchronized (mPending){
+            System.arraycopy(rates, 0, mPending, 0, count);
+            mPendingCount = count;
+            mHasPending = true;
+            mSubmittedCount++;
+            if (mIsWriteScheduled){
+                return;
+            }
+            mIsWriteScheduled = true;
+        }
+        executor.execute(this::writePendingQuietly);
+    }
+
+    private void writePendingQuietly(){
+        try {
+            writePending();
+            mWriteError = null;
+        } catch (IOException e){
+            mWriteError = e;
+        }
+    }
+
+    /**
+     * Write submitted rates now if they have not been written yet, e.g. before process goes to background
+     */
+    public synchronized void writePending() throws IOException {
+        int count;
+        // pending rates are taken under write lock, so a later write never loses to an earlier one
+        synchronized (mPending){
+            mIsWriteScheduled = false;
+            if (!mHasPending){
+                return;
+            }
+            mHasPending = false;
+            count = mPendingCount;
+            System.arraycopy(mPending, 0, mWriteRates, 0, count);
+        }
+        try {
+            write(mWriteRates, count);
+        } catch (IOException e){
+            synchronized (mPending){
+                if (!mHasPending){
+                    // nothing newer came meanwhile, keep these rates for the next attempt
+                    System.arraycopy(mWriteRates, 0, mPending, 0, count);
+                    mPendingCount = count;
+                    mHasPending = true;
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return error of the last background write or null if it has succeeded
+     */
+    public IOException getWriteError(){
+        return mWriteError;
+    }
+
+    public long getSubmittedCount(){
+        synchronized (mPending){
+            return mSubmittedCount;
+        }
+    }
+
+    public synchronized long getWrittenCount(){
+        return mWrittenCount;
+    }
+
+    public int getCapacity(){
+        return mCapacity;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writePending();
+        if (mChannel == null){
+            return;
+        }
+        mRandomAccessFile.close();
+        mRandomAccessFile = null;
+        mChannel = null;
+    }
+}
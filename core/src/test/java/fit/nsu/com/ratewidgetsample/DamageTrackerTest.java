@@ -0,0 +1,57 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DamageTrackerTest {
+
+    @Test
+    public void emptyByDefault() throws Exception {
+        DamageTracker tracker = new DamageTracker();
+        assertTrue(tracker.isEmpty());
+    }
+
+    @Test
+    public void unionCoversAllSpans() throws Exception {
+        DamageTracker tracker = new DamageTracker();
+        tracker.add(10f, 0f, 40f, 300f);
+        tracker.add(84f, 0f, 116f, 300f);
+
+        assertFalse(tracker.isEmpty());
+        assertEquals(9, tracker.getLeft());
+        assertEquals(-1, tracker.getTop());
+        assertEquals(117, tracker.getRight());
+        assertEquals(301, tracker.getBottom());
+    }
+
+    @Test
+    public void invertedRectIsNormalized() throws Exception {
+        DamageTracker tracker = new DamageTracker();
+        tracker.add(20f, 70f, 10f, 30f);
+        assertEquals(9, tracker.getLeft());
+        assertEquals(29, tracker.getTop());
+        assertEquals(21, tracker.getRight());
+        assertEquals(71, tracker.getBottom());
+    }
+
+    @Test
+    public void fractionalSpanIsRoundedOutwards() throws Exception {
+        DamageTracker tracker = new DamageTracker();
+        tracker.add(10.5f, 0f, 20.2f, 100f);
+        assertEquals(9, tracker.getLeft());
+        assertEquals(22, tracker.getRight());
+    }
+
+    @Test
+    public void resetDropsDamage() throws Exception {
+        DamageTracker tracker = new DamageTracker();
+        tracker.add(84f, 34f, 116f, 66f);
+        tracker.reset();
+        assertTrue(tracker.isEmpty());
+
+        tracker.add(8f, 8f, 12f, 12f);
+        assertEquals(7, tracker.getLeft());
+        assertEquals(13, tracker.getRight());
+    }
+}
@@ -0,0 +1,53 @@
+package fit.nsu.com.ratewidgetsample;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fake sink for tests, writes every delivered rating as a
+ * "questionId,rate,timestamp" line and can be asked to fail
+ */
+class FileRatingSink implements RatingSink {
+
+    private final File mFile;
+    private int mBatchCount = 0;
+    private int mFailAfterBatches = Integer.MAX_VALUE;
+
+    FileRatingSink(File file){
+        mFile = file;
+    }
+
+    void failAfter(int batches){
+        mFailAfterBatches = batches;
+    }
+
+    @Override
+    public void send(RatingBatch batch) throws IOException {
+        if (mBatchCount >= mFailAfterBatches){
+            throw new IOException("Sink is down");
+        }
+        try (Writer writer = new FileWriter(mFile, true)) {
+            for (int i = 0; i < batch.size(); ++i){
+                writer.write(batch.getQuestionId(i) + "," + batch.getRate(i) + "," + batch.getTimestamp(i) + "\n");
+            }
+        }
+        mBatchCount++;
+    }
+
+    int getBatchCount(){
+        return mBatchCount;
+    }
+
+    List<String> readLines() throws IOException {
+        if (!mFile.exists()){
+            return Collections.emptyList();
+        }
+        return Files.readAllLines(mFile.toPath(), Charset.forName("UTF-8"));
+    }
+}
@@ -0,0 +1,108 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HitTestIndexTest {
+
+    @Test
+    public void evenlySpreadPointsAreResolvedArithmetically() throws Exception {
+        HitTestIndex index = new HitTestIndex(new RateLayout(1000, 300, 11, 8).getPointCenters(), 32f);
+        assertTrue(index.isUniform());
+        assertEquals(0, index.indexAt(32f));
+        assertEquals(5, index.indexAt(500f));
+        assertEquals(10, index.indexAt(968f));
+    }
+
+    @Test
+    public void edgePoints() throws Exception {
+        HitTestIndex index = new HitTestIndex(new float[]{32f, 132f, 232f}, 32f);
+        assertEquals(0, index.indexAt(0.5f));
+        assertEquals(HitTestIndex.NO_POINT, index.indexAt(0f));
+        assertEquals(HitTestIndex.NO_POINT, index.indexAt(-100f));
+        assertEquals(2, index.indexAt(263.5f));
+        assertEquals(HitTestIndex.NO_POINT, index.indexAt(264f));
+        assertEquals(HitTestIndex.NO_POINT, index.indexAt(10000f));
+    }
+
+    @Test
+    public void slopBoundaryIsExclusive() throws Exception {
+        HitTestIndex index = new HitTestIndex(new float[]{0f, 100f, 200f}, 10f);
+        assertEquals(1, index.indexAt(90.01f));
+        assertEquals(HitTestIndex.NO_POINT, index.indexAt(90f));
+        assertEquals(HitTestIndex.NO_POINT, index.indexAt(50f));
+        assertEquals(1, index.indexAt(109.99f));
+        assertEquals(HitTestIndex.NO_POINT, index.indexAt(110f));
+    }
+
+    @Test
+    public void overlappingSlopsPickNearestPoint() throws Exception {
+        HitTestIndex index = new HitTestIndex(new float[]{0f, 10f, 20f}, 32f);
+        assertEquals(0, index.indexAt(4f));
+        assertEquals(1, index.indexAt(6f));
+        assertEquals(2, index.indexAt(16f));
+    }
+
+    @Test
+    public void unevenlySpreadPointsUseBinarySearch() throws Exception {
+        float[] centers = {0f, 10f, 15f, 100f, 101f, 300f};
+        HitTestIndex index = new HitTestIndex(centers, 1000f);
+        assertFalse(index.isUniform());
+        for (float x = -50f; x < 350f; x += 0.25f){
+            assertEquals("x = " + x, nearestByScan(centers, x), index.indexAt(x));
+        }
+    }
+
+    @Test
+    public void largeScale() throws Exception {
+        float[] centers = new RateLayout(1080, 300, 101, 8).getPointCenters();
+        HitTestIndex index = new HitTestIndex(centers, 5f);
+        for (int i = 0; i < centers.length; ++i){
+            assertEquals(i, index.indexAt(centers[i]));
+            assertEquals(i, index.indexAt(centers[i] + 4.9f));
+            assertEquals(i, index.indexAt(centers[i] - 4.9f));
+        }
+    }
+
+    @Test
+    public void nearestIndexIgnoresSlop() throws Exception {
+        HitTestIndex index = new HitTestIndex(new float[]{0f, 100f, 200f}, 10f);
+        assertEquals(HitTestIndex.NO_POINT, index.indexAt(60f));
+        assertEquals(1, index.nearestIndex(60f));
+        assertEquals(0, index.nearestIndex(-500f));
+        assertEquals(2, index.nearestIndex(500f));
+    }
+
+    @Test
+    public void singlePoint() throws Exception {
+        HitTestIndex index = new HitTestIndex(new float[]{50f}, 5f);
+        assertEquals(0, index.indexAt(52f));
+        assertEquals(HitTestIndex.NO_POINT, index.indexAt(60f));
+    }
+
+    @Test
+    public void denseScaleIsUniform() throws Exception {
+        RateLayout layout = new RateLayout(1080, 300, 10001, 8);
+        HitTestIndex index = new HitTestIndex(layout.getPointCenters(), 0.05f);
+        assertTrue(index.isUniform());
+        for (int i = 0; i < 10001; i += 37){
+            assertEquals(i, index.nearestIndex(layout.getPointCenter(i)));
+        }
+    }
+
+    @Test
+    public void emptyScale() throws Exception {
+        assertEquals(HitTestIndex.NO_POINT, new HitTestIndex(new float[0], 5f).indexAt(0f));
+    }
+
+    private static int nearestByScan(float[] centers, float x){
+        int nearest = 0;
+        for (int i = 1; i < centers.length; ++i){
+            if (Math.abs(x - centers[i]) < Math.abs(x - centers[nearest])){
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+}
@@ -0,0 +1,88 @@
+package fit.nsu.com.ratewidgetsample;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Headless {@link ScaleCanvas} drawing into java.awt image, so scale can be rendered on any JVM.
+ *
+ * Labels are drawn as boxes of label size instead of glyphs: fonts differ from box to box,
+ * boxes do not, and golden images stay comparable everywhere.
+ */
+class Java2DScaleCanvas implements ScaleCanvas {
+
+    final static float SELECTED_TEXT_SIZE = 40f;
+    final static float SIMPLE_TEXT_SIZE = 30f;
+
+    private final BufferedImage mImage;
+    private final Graphics2D mGraphics;
+    private final Line2D.Float mLine = new Line2D.Float();
+    private final Ellipse2D.Float mCircle = new Ellipse2D.Float();
+    private final Rectangle2D.Float mRect = new Rectangle2D.Float();
+
+    Java2DScaleCanvas(int width, int height){
+        mImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        mGraphics = mImage.createGraphics();
+        mGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        mGraphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+    }
+
+    BufferedImage getImage(){
+        return mImage;
+    }
+
+    /**
+     * Make the whole image transparent, as a fresh widget bitmap is
+     */
+    void clear(){
+        mGraphics.setClip(null);
+        mGraphics.setComposite(AlphaComposite.Clear);
+        mGraphics.fillRect(0, 0, mImage.getWidth(), mImage.getHeight());
+        mGraphics.setComposite(AlphaComposite.SrcOver);
+    }
+
+    /**
+     * Replace pixels of [left, right) with ones of image of the same size, like widget composes base scales
+     */
+    void copy(BufferedImage image, float left, float right){
+        mGraphics.setClip(new Rectangle2D.Float(left, 0, right - left, mImage.getHeight()));
+        mGraphics.setComposite(AlphaComposite.Src);
+        mGraphics.drawImage(image, 0, 0, null);
+        mGraphics.setComposite(AlphaComposite.SrcOver);
+        mGraphics.setClip(null);
+    }
+
+    @Override
+    public void drawLine(float startX, float stopX, float y, float strokeWidth, int color) {
+        mGraphics.setColor(new Color(color, true));
+        // android draws lines with butt caps by default
+        mGraphics.setStroke(new BasicStroke(strokeWidth, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER));
+        mLine.setLine(startX, y, stopX, y);
+        mGraphics.draw(mLine);
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, int color) {
+        mGraphics.setColor(new Color(color, true));
+        mCircle.setFrame(centerX - radius, centerY - radius, 2 * radius, 2 * radius);
+        mGraphics.fill(mCircle);
+    }
+
+    @Override
+    public void drawLabel(int index, String text, float centerX, float baselineY, boolean selected, int color) {
+        float size = selected ? SELECTED_TEXT_SIZE : SIMPLE_TEXT_SIZE;
+        // roughly digits of sans-serif font: 0.6 of size wide and 0.7 of size high
+        float width = 0.6f * size * text.length();
+        float height = 0.7f * size;
+        mGraphics.setColor(new Color(color, true));
+        mRect.setRect(centerX - width / 2, baselineY - height, width, height);
+        mGraphics.fill(mRect);
+    }
+}
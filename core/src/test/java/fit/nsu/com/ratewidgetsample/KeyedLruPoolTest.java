@@ -0,0 +1,70 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KeyedLruPoolTest {
+
+    private final List<String> mEvicted = new ArrayList<>();
+    private final KeyedLruPool<String> mPool = new KeyedLruPool<>(100, mEvicted::add);
+
+    @Test
+    public void emptyPoolMisses() throws Exception {
+        assertNull(mPool.acquire(1));
+        assertEquals(1, mPool.getMissCount());
+        assertEquals(0, mPool.getHitCount());
+    }
+
+    @Test
+    public void releasedItemIsReusedByKey() throws Exception {
+        mPool.release(1, "a", 10);
+        mPool.release(2, "b", 10);
+        assertNull(mPool.acquire(3));
+        assertEquals("a", mPool.acquire(1));
+        assertNull(mPool.acquire(1));
+        assertEquals(1, mPool.getHitCount());
+        assertEquals(2, mPool.getMissCount());
+        assertEquals(10, mPool.getSize());
+        assertEquals(1, mPool.getCount());
+    }
+
+    @Test
+    public void leastRecentlyReleasedIsEvicted() throws Exception {
+        mPool.release(1, "a", 40);
+        mPool.release(2, "b", 40);
+        mPool.release(3, "c", 40);
+        assertEquals(1, mPool.getEvictionCount());
+        assertEquals("a", mEvicted.get(0));
+        assertNull(mPool.acquire(1));
+        assertEquals(80, mPool.getSize());
+    }
+
+    @Test
+    public void tooLargeItemIsEvictedImmediately() throws Exception {
+        mPool.release(1, "huge", 101);
+        assertEquals(0, mPool.getCount());
+        assertEquals("huge", mEvicted.get(0));
+    }
+
+    @Test
+    public void clearEvictsEverything() throws Exception {
+        mPool.release(1, "a", 10);
+        mPool.release(1, "b", 10);
+        mPool.clear();
+        assertEquals(0, mPool.getSize());
+        assertEquals(2, mPool.getEvictionCount());
+        assertEquals(2, mEvicted.size());
+    }
+
+    @Test
+    public void sameKeyHoldsSeveralItems() throws Exception {
+        mPool.release(1, "a", 10);
+        mPool.release(1, "b", 10);
+        assertEquals("b", mPool.acquire(1));
+        assertEquals("a", mPool.acquire(1));
+    }
+}
@@ -0,0 +1,51 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsArePowersOfTwoMicros() throws Exception {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(0, LatencyHistogram.bucketOf(999));
+        assertEquals(0, LatencyHistogram.bucketOf(1999));
+        assertEquals(1, LatencyHistogram.bucketOf(2000));
+        assertEquals(1, LatencyHistogram.bucketOf(3999));
+        assertEquals(2, LatencyHistogram.bucketOf(4000));
+        assertEquals(13, LatencyHistogram.bucketOf(16000000));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; ++i){
+            histogram.record(3000);
+        }
+        for (int i = 0; i < 10; ++i){
+            histogram.record(20000000);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(3000, histogram.getMinNanos());
+        assertEquals(20000000, histogram.getMaxNanos());
+        assertEquals((90 * 3000L + 10 * 20000000L) / 100, histogram.getMeanNanos());
+        assertEquals(4000, histogram.getPercentileNanos(50));
+        assertEquals(4000, histogram.getPercentileNanos(90));
+        assertEquals(20000000, histogram.getPercentileNanos(99));
+    }
+
+    @Test
+    public void copyAndReset() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5000);
+        LatencyHistogram copy = new LatencyHistogram();
+        histogram.copyTo(copy);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMinNanos());
+        assertEquals(1, copy.getCount());
+        assertEquals(1, copy.getBucketCount(2));
+    }
+}
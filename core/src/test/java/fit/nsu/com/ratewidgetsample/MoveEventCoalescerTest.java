@@ -0,0 +1,67 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MoveEventCoalescerTest {
+
+    @Test
+    public void onlyFirstEventOfFrameSchedulesCallback() throws Exception {
+        MoveEventCoalescer coalescer = new MoveEventCoalescer();
+        assertTrue(coalescer.offer(10f));
+        assertFalse(coalescer.offer(20f));
+        assertFalse(coalescer.offer(30f));
+        assertTrue(coalescer.hasPending());
+
+        assertEquals(30f, coalescer.consume(), 0f);
+        assertFalse(coalescer.hasPending());
+        assertTrue(coalescer.offer(40f));
+    }
+
+    @Test
+    public void countersSplitReceivedEvents() throws Exception {
+        MoveEventCoalescer coalescer = new MoveEventCoalescer();
+        // 240 Hz panel against 60 Hz display
+        for (int frame = 0; frame < 60; ++frame){
+            for (int i = 0; i < 4; ++i){
+                coalescer.offer(frame * 4 + i);
+            }
+            coalescer.consume();
+            if (frame % 2 == 0){
+                coalescer.onApplied();
+            }
+        }
+        assertEquals(240, coalescer.getReceivedCount());
+        assertEquals(180, coalescer.getCoalescedCount());
+        assertEquals(60, coalescer.getFrameCount());
+        assertEquals(30, coalescer.getAppliedCount());
+    }
+
+    @Test
+    public void cancelDropsPendingEvent() throws Exception {
+        MoveEventCoalescer coalescer = new MoveEventCoalescer();
+        coalescer.offer(10f);
+        coalescer.cancel();
+        assertFalse(coalescer.hasPending());
+        assertEquals(1, coalescer.getCoalescedCount());
+        assertEquals(0, coalescer.getFrameCount());
+
+        coalescer.cancel();
+        assertEquals(1, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void resetCounters() throws Exception {
+        MoveEventCoalescer coalescer = new MoveEventCoalescer();
+        coalescer.offer(10f);
+        coalescer.offer(11f);
+        coalescer.consume();
+        coalescer.onApplied();
+        coalescer.resetCounters();
+        assertEquals(0, coalescer.getReceivedCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+        assertEquals(0, coalescer.getFrameCount());
+        assertEquals(0, coalescer.getAppliedCount());
+    }
+}
@@ -0,0 +1,184 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class NpsAggregatorTest {
+
+    private final static double EPS = 1e-9;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void scoreOfGroups() throws Exception {
+        NpsAggregator aggregator = new NpsAggregator();
+        // 2 detractors, 1 passive, 3 promoters
+        int[] rates = {0, 6, 7, 9, 10, 10};
+        for (int rate : rates){
+            aggregator.add(1, rate);
+        }
+        assertEquals(6, aggregator.getTotal());
+        assertEquals(2, aggregator.getDetractors());
+        assertEquals(1, aggregator.getPassives());
+        assertEquals(3, aggregator.getPromoters());
+        assertEquals(2, aggregator.getCount(10));
+        assertEquals(100.0 * (3 - 2) / 6, aggregator.getScore(), EPS);
+    }
+
+    @Test
+    public void emptyScoreIsNaN() throws Exception {
+        NpsAggregator aggregator = new NpsAggregator();
+        assertTrue(Double.isNaN(aggregator.getScore()));
+        assertTrue(Double.isNaN(aggregator.getSegmentScore(1)));
+        assertEquals(0, aggregator.getSegmentTotal(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rateOutOfScaleIsRejected() throws Exception {
+        new NpsAggregator().add(1, 11);
+    }
+
+    @Test
+    public void segmentsAreCountedApart() throws Exception {
+        NpsAggregator aggregator = new NpsAggregator();
+        // enough segments to grow table several times
+        for (int question = 0; question < 1000; ++question){
+            for (int i = 0; i <= question % 5; ++i){
+                aggregator.add(question * 7919, question % 2 == 0 ? 10 : 0);
+            }
+        }
+        assertEquals(1000, aggregator.getSegmentCount());
+        assertEquals(0, aggregator.getSegmentId(0));
+        assertEquals(7919 * 999, aggregator.getSegmentId(999));
+        for (int question = 0; question < 1000; ++question){
+            int id = question * 7919;
+            assertEquals(question % 5 + 1, aggregator.getSegmentTotal(id));
+            assertEquals(question % 2 == 0 ? 100.0 : -100.0, aggregator.getSegmentScore(id), EPS);
+        }
+        long[] histogram = aggregator.getSegmentHistogram(7919 * 4, new long[NpsAggregator.MAX_RATE + 1]);
+        assertEquals(5, histogram[10]);
+        assertEquals(0, aggregator.getSegmentTotal(1));
+    }
+
+    @Test
+    public void mergedPartsEqualWhole() throws Exception {
+        Random random = new Random(7);
+        NpsAggregator whole = new NpsAggregator();
+        NpsAggregator[] parts = {new NpsAggregator(), new NpsAggregator(), new NpsAggregator()};
+        for (int i = 0; i < 10000; ++i){
+            int question = random.nextInt(50);
+            int rate = random.nextInt(11);
+            whole.add(question, rate);
+            parts[random.nextInt(parts.length)].add(question, rate);
+        }
+        NpsAggregator merged = new NpsAggregator();
+        for (NpsAggregator part : parts){
+            merged.merge(part);
+        }
+        assertSameCounts(whole, merged);
+    }
+
+    @Test
+    public void drainedOutboxIsAggregated() throws Exception {
+        RatingOutbox outbox = new RatingOutbox(mFolder.newFile(), 8);
+        NpsAggregator expected = new NpsAggregator();
+        for (int i = 0; i < 100; ++i){
+            outbox.append(i % 3, i % 11, i);
+            expected.add(i % 3, i % 11);
+        }
+        NpsAggregator aggregator = new NpsAggregator();
+        assertEquals(100, outbox.drain(aggregator, 16));
+        outbox.close();
+        assertSameCounts(expected, aggregator);
+    }
+
+    @Test
+    public void deliveredOutboxRecordsAreNotCountedAgain() throws Exception {
+        File file = mFolder.newFile();
+        RatingOutbox outbox = new RatingOutbox(file, 1);
+        for (int i = 0; i < 4; ++i){
+            outbox.append(1, 10, i);
+        }
+        // the second batch fails, so the first one stays delivered and the rest is pending
+        int[] batches = new int[1];
+        try {
+            outbox.drain(batch -> {
+                if (++batches[0] == 2){
+                    throw new IOException("offline");
+                }
+            }, 2);
+            fail();
+        } catch (IOException expected){
+        }
+        outbox.append(1, 0, 4);
+        outbox.close();
+
+        NpsAggregator pending = NpsAggregator.read(file);
+        assertEquals(3, pending.getTotal());
+        assertEquals(1, pending.getCount(0));
+        assertEquals(2, pending.getCount(10));
+        // header-only outbox has nothing pending
+        assertEquals(0, NpsAggregator.read(mFolder.newFile()).getTotal());
+    }
+
+    @Test
+    public void logIsReadSequentiallyAndInParallel() throws Exception {
+        File file = mFolder.newFile();
+        RatingOutbox outbox = new RatingOutbox(file, 1024);
+        NpsAggregator expected = new NpsAggregator();
+        Random random = new Random(11);
+        // several parallel parts and a partial read buffer
+        int count = 600_000 + 123;
+        for (int i = 0; i < count; ++i){
+            int question = random.nextInt(30);
+            int rate = random.nextInt(11);
+            outbox.append(question, rate, i);
+            expected.add(question, rate);
+        }
+        outbox.close();
+        // torn record of crashed append is not a rating
+        try (RandomAccessFile log = new RandomAccessFile(file, "rw")){
+            log.setLength(log.length() + RatingOutbox.RECORD_SIZE / 2);
+        }
+
+        assertSameCounts(expected, NpsAggregator.read(file, RatingOutbox.HEADER_SIZE));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertSameCounts(expected, NpsAggregator.readParallel(file, RatingOutbox.HEADER_SIZE, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptedLogFails() throws Exception {
+        File file = mFolder.newFile();
+        RatingOutbox outbox = new RatingOutbox(file, 1);
+        outbox.append(1, 5, 0);
+        outbox.append(1, 42, 0);
+        outbox.close();
+        NpsAggregator.read(file, RatingOutbox.HEADER_SIZE);
+    }
+
+    private static void assertSameCounts(NpsAggregator expected, NpsAggregator actual){
+        long[] expectedHistogram = new long[NpsAggregator.MAX_RATE + 1];
+        long[] actualHistogram = new long[NpsAggregator.MAX_RATE + 1];
+        assertArrayEquals(expected.getHistogram(expectedHistogram), actual.getHistogram(actualHistogram));
+        assertEquals(expected.getSegmentCount(), actual.getSegmentCount());
+        for (int i = 0; i < expected.getSegmentCount(); ++i){
+            int id = expected.getSegmentId(i);
+            assertArrayEquals(expected.getSegmentHistogram(id, expectedHistogram),
+                    actual.getSegmentHistogram(id, actualHistogram));
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RateAnimationDriverTest {
+
+    private final static long FRAME = 16666667;
+
+    @Test
+    public void settlesOnPickedRate() throws Exception {
+        RateState state = new RateState();
+        state.restore(0);
+        RateAnimationDriver driver = new RateAnimationDriver(state);
+
+        assertTrue(driver.select(4, 0));
+        assertTrue(driver.isRunning());
+        assertEquals(RateState.INIT_STATE, driver.getSelected());
+        assertEquals(0f, driver.getPosition(), 1e-6f);
+
+        long now = 0;
+        float previous = 0;
+        while (driver.onFrame(now += FRAME)){
+            assertTrue(driver.getPosition() >= previous);
+            assertTrue(driver.getPosition() <= 4);
+            previous = driver.getPosition();
+        }
+        assertEquals(4f, driver.getPosition(), 0f);
+        assertEquals(4, driver.getSelected());
+        assertFalse(state.isAnimationRunning());
+    }
+
+    @Test
+    public void retargetStartsFromReachedPosition() throws Exception {
+        RateState state = new RateState();
+        state.restore(0);
+        RateAnimationDriver driver = new RateAnimationDriver(state);
+        driver.select(10, 0);
+        long now = 0;
+        for (int i = 0; i < 15; ++i){
+            driver.onFrame(now += FRAME);
+        }
+        float reached = driver.getPosition();
+        assertTrue(reached > 0 && reached < 10);
+
+        // tap behind the fill turns animation back from where it is
+        assertFalse(driver.select(1, now));
+        assertEquals(1, driver.getTarget());
+        driver.onFrame(now += FRAME);
+        assertTrue(driver.getPosition() <= reached);
+        assertTrue(driver.getPosition() > 1);
+    }
+
+    @Test
+    public void sameTargetDoesNotRestart() throws Exception {
+        RateState state = new RateState();
+        state.restore(0);
+        RateAnimationDriver driver = new RateAnimationDriver(state);
+        driver.select(5, 0);
+        driver.onFrame(5 * FRAME);
+        float position = driver.getPosition();
+        assertFalse(driver.select(5, 5 * FRAME));
+        driver.onFrame(6 * FRAME);
+        assertTrue(driver.getPosition() > position);
+    }
+
+    @Test
+    public void finishJumpsToCurrentRate() throws Exception {
+        RateState state = new RateState();
+        state.restore(0);
+        RateAnimationDriver driver = new RateAnimationDriver(state);
+        driver.select(5, 0);
+        driver.onFrame(FRAME);
+        driver.finish();
+        assertFalse(driver.isRunning());
+        assertFalse(state.isAnimationRunning());
+        assertEquals(5f, driver.getPosition(), 0f);
+        assertEquals(5, driver.getSelected());
+    }
+
+    @Test
+    public void legIsBounded() throws Exception {
+        RateState state = new RateState();
+        RateAnimationDriver driver = new RateAnimationDriver(state);
+        // grows with log of distance: 320 ms for one point either way, about 504 ms for ten
+        assertEquals(320 * 1000000, driver.durationNanos(1));
+        assertEquals(320 * 1000000, driver.durationNanos(-1));
+        assertEquals(504 * 1000000, driver.durationNanos(10), 1000000);
+        assertEquals(RateAnimationDriver.DEFAULT_MAX_DURATION_NANOS, driver.durationNanos(1000));
+        assertTrue(driver.durationNanos(0.01f) > 0);
+    }
+
+    /**
+     * Random taps between random frames, drawn state has to end up at the last picked rate
+     * within max duration after the last tap, however many taps there were
+     */
+    @Test
+    public void drawnStateAlwaysMatchesCurrentRate() throws Exception {
+        Random random = new Random(7);
+        for (int run = 0; run < 2000; ++run){
+            int points = 2 + random.nextInt(100);
+            RateState state = new RateState();
+            state.restore(random.nextInt(points));
+            RateAnimationDriver driver = new RateAnimationDriver(state);
+
+            long now = 0;
+            boolean framesScheduled = false;
+            float drawnPosition = driver.getPosition();
+            int drawnSelected = driver.getSelected();
+            long lastTap = 0;
+            int taps = 1 + random.nextInt(30);
+            for (int tap = 0; tap < taps; ++tap){
+                // tap may land right before the next frame or after several ones
+                int frames = random.nextInt(4) == 0 ? random.nextInt(60) : random.nextInt(3);
+                for (int i = 0; i < frames && framesScheduled; ++i){
+                    now += FRAME;
+                    framesScheduled = driver.onFrame(now);
+                    drawnPosition = driver.getPosition();
+                    drawnSelected = driver.getSelected();
+                }
+                now += random.nextInt((int) FRAME);
+                lastTap = now;
+                if (driver.select(random.nextInt(points), now)){
+                    assertFalse(framesScheduled);
+                    framesScheduled = true;
+                }
+                assertEquals(framesScheduled, driver.isRunning());
+                if (!framesScheduled){
+                    // no animation means state is shown as is
+                    drawnPosition = driver.getPosition();
+                    drawnSelected = driver.getSelected();
+                }
+            }
+            while (framesScheduled){
+                now += FRAME;
+                framesScheduled = driver.onFrame(now);
+                drawnPosition = driver.getPosition();
+                drawnSelected = driver.getSelected();
+            }
+
+            assertEquals(state.getCurrentRate(), drawnSelected);
+            assertEquals(state.getCurrentRate(), drawnPosition, 0f);
+            assertFalse(state.isAnimationRunning());
+            assertTrue(now - lastTap <= driver.getMaxDurationNanos() + FRAME);
+        }
+    }
+
+    @Test
+    public void frameDoesNotAllocate() throws Exception {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        RateLayout layout = new RateLayout(1000, 300, 101, 8);
+        ScaleRenderer renderer = new ScaleRenderer(layout, RateLabels.obtain(101),
+                0xFF0000FF, 0xFFD8D8D8, 0xFFFFFFFF, 0x61000000, 200f);
+        RateState state = new RateState();
+        RateAnimationDriver driver = new RateAnimationDriver(state);
+        CountingCanvas canvas = new CountingCanvas();
+        DamageTracker damage = new DamageTracker();
+        long threadId = Thread.currentThread().getId();
+
+        // warm up so as class loading and compilation do not count
+        runAnimation(driver, state, renderer, canvas, damage);
+        runAnimation(driver, state, renderer, canvas, damage);
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        int checksum = runAnimation(driver, state, renderer, canvas, damage);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(checksum > 0);
+        assertEquals(0, allocated);
+    }
+
+    /**
+     * Animation across the whole scale, every frame does what RateWidget does on bitmap:
+     * fill edge and labels are drawn and repainted span is added to damage
+     */
+    private static int runAnimation(RateAnimationDriver driver, RateState state, ScaleRenderer renderer,
+                                    CountingCanvas canvas, DamageTracker damage){
+        RateLayout layout = renderer.getLayout();
+        state.restore(0);
+        driver.select(layout.getPointCount() - 1, 0);
+        int checksum = 0;
+        float drawnFillX = ScaleRenderer.fillXAt(layout, driver.getPosition());
+        long now = 0;
+        boolean isRunning = true;
+        while (isRunning){
+            isRunning = driver.onFrame(now += FRAME);
+            float fillX = ScaleRenderer.fillXAt(layout, driver.getPosition());
+            renderer.drawFillEdge(canvas, fillX);
+            renderer.drawOverlay(canvas, driver.getSelected());
+            damage.add(Math.min(fillX, drawnFillX), 0,
+                    Math.max(fillX, drawnFillX), layout.getHeight());
+            drawnFillX = fillX;
+            checksum += damage.getRight() - damage.getLeft();
+            damage.reset();
+        }
+        return checksum + canvas.ops;
+    }
+
+    private static class CountingCanvas implements ScaleCanvas {
+        int ops;
+
+        @Override
+        public void drawLine(float startX, float stopX, float y, float strokeWidth, int color) {
+            ops++;
+        }
+
+        @Override
+        public void drawCircle(float centerX, float centerY, float radius, int color) {
+            ops++;
+        }
+
+        @Override
+        public void drawLabel(int index, String text, float centerX, float baselineY, boolean selected, int color) {
+            ops++;
+        }
+    }
+}
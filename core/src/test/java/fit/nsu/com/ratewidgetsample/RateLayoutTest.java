@@ -0,0 +1,150 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RateLayoutTest {
+
+    private final static float EPS = 1e-3f;
+
+    @Test
+    public void radiiAreDerivedFromInnerRadius() throws Exception {
+        RateLayout layout = new RateLayout(1000, 300, 11, 8);
+        assertEquals(8, layout.getLineStrokeWidth());
+        assertEquals(16, layout.getOuterPointRadius());
+        assertEquals(17f, layout.getDeltedOuterPointRadius(), EPS);
+        assertEquals(32, layout.getSelectedPointRadius());
+    }
+
+    @Test
+    public void verticalCoordinates() throws Exception {
+        RateLayout layout = new RateLayout(1000, 300, 11, 8);
+        assertEquals(300f - 64 + 8, layout.getLineY(), EPS);
+        assertEquals(layout.getLineY() - 64 + 16, layout.getSelectedTextY(), EPS);
+    }
+
+    @Test
+    public void pointsAreSpreadEvenlyBetweenLineEnds() throws Exception {
+        RateLayout layout = new RateLayout(1000, 300, 11, 8);
+        float[] centers = layout.getPointCenters();
+        assertEquals(11, centers.length);
+        assertEquals(32f, centers[0], EPS);
+        assertEquals(968f, centers[10], EPS);
+        assertEquals(93.6f, layout.getStep(), EPS);
+        for (int i = 1; i < centers.length; ++i){
+            assertEquals(layout.getStep(), centers[i] - centers[i - 1], EPS);
+        }
+    }
+
+    @Test
+    public void fractionalStepDoesNotDrift() throws Exception {
+        RateLayout layout = new RateLayout(1080, 300, 1001, 8);
+        assertEquals(layout.getLineEndX(), layout.getPointCenter(1000), EPS);
+    }
+
+    @Test
+    public void singlePointScale() throws Exception {
+        RateLayout layout = new RateLayout(1000, 300, 1, 8);
+        assertEquals(0f, layout.getStep(), EPS);
+        assertEquals(32f, layout.getPointCenter(0), EPS);
+    }
+
+    @Test
+    public void denseScaleKeepsLastPointAtLineEnd() throws Exception {
+        RateLayout layout = new RateLayout(1080, 300, 10001, 8);
+        assertEquals(layout.getLineEndX(), layout.getPointCenter(10000), 0f);
+        assertEquals(layout.getLineStartX() + 5000 * layout.getStep(), layout.getPointCenter(5000), 1e-3f);
+        assertEquals((layout.getPointCenter(7) + layout.getPointCenter(8)) / 2, layout.getPositionX(7.5f), 1e-3f);
+    }
+
+    @Test
+    public void tickStride() throws Exception {
+        assertEquals(1, new RateLayout(1000, 300, 11, 8).getTickStride());
+        assertEquals(1, RateLayout.tickStride(10f, 10f));
+        assertEquals(2, RateLayout.tickStride(6f, 10f));
+        assertEquals(5, RateLayout.tickStride(3f, 10f));
+        assertEquals(10, RateLayout.tickStride(1.5f, 10f));
+        assertEquals(50, RateLayout.tickStride(0.25f, 10f));
+
+        RateLayout layout = new RateLayout(1080, 300, 1001, 8);
+        int stride = layout.getTickStride();
+        assertTrue(stride > 1);
+        float spacing = layout.getPointCenter(stride) - layout.getPointCenter(0);
+        assertTrue(spacing >= 2 * layout.getDeltedOuterPointRadius());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyScaleIsRejected() throws Exception {
+        new RateLayout(1000, 300, 0, 8);
+    }
+
+    @Test
+    public void obtainReusesLayoutOfSameConfiguration() throws Exception {
+        RateLayout first = RateLayout.obtain(720, 200, 11, 8);
+        assertSame(first, RateLayout.obtain(720, 200, 11, 8));
+        assertNotSame(first, RateLayout.obtain(720, 200, 6, 8));
+        assertNotSame(first, RateLayout.obtain(721, 200, 11, 8));
+    }
+
+    @Test
+    public void obtainEvictsLeastRecentlyUsed() throws Exception {
+        RateLayout kept = RateLayout.obtain(640, 200, 11, 8);
+        for (int i = 0; i < 100; ++i){
+            RateLayout.obtain(100 + i, 200, 11, 8);
+            assertSame(kept, RateLayout.obtain(640, 200, 11, 8));
+        }
+        RateLayout evicted = RateLayout.obtain(10, 10, 2, 1);
+        for (int i = 0; i < 100; ++i){
+            RateLayout.obtain(1000 + i, 200, 11, 8);
+        }
+        assertNotSame(evicted, RateLayout.obtain(10, 10, 2, 1));
+    }
+
+    @Test
+    public void heightChangeSharesPoints() throws Exception {
+        RateLayout tall = RateLayout.obtain(777, 300, 11, 8);
+        RateLayout low = RateLayout.obtain(777, 200, 11, 8);
+        RateLayout fresh = new RateLayout(777, 200, 11, 8);
+
+        assertSame(tall.getPointCenters(), low.getPointCenters());
+        assertEquals(200, low.getHeight());
+        assertEquals(fresh.getLineY(), low.getLineY(), 0f);
+        assertEquals(fresh.getSelectedTextY(), low.getSelectedTextY(), 0f);
+        assertEquals(fresh.getTickStride(), low.getTickStride());
+        assertArrayEquals(fresh.getPointCenters(), low.getPointCenters(), 0f);
+    }
+
+    @Test
+    public void minHeightFitsSelectedLabel() throws Exception {
+        int height = RateLayout.getMinHeight(8, 40f);
+        assertTrue(new RateLayout(1000, height, 11, 8).getSelectedTextY() - 40f >= 0f);
+        assertTrue(new RateLayout(1000, height - 1, 11, 8).getSelectedTextY() - 40f < 0f);
+    }
+
+    @Test
+    public void thousandsOfResizesKeepScaleStable() throws Exception {
+        Random random = new Random(42);
+        RateLayout previous = null;
+        for (int i = 0; i < 5000; ++i){
+            // resizes mostly go back and forth between a few sizes, like rotation and split screen
+            int width = random.nextBoolean() ? 1080 : 200 + random.nextInt(1800);
+            int height = random.nextBoolean() ? 300 : 150 + random.nextInt(500);
+            RateLayout layout = RateLayout.obtain(width, height, 11, 8);
+            float[] centers = layout.getPointCenters();
+
+            assertEquals(11, layout.getPointCount());
+            assertEquals(11, centers.length);
+            assertEquals(layout.getLineStartX(), centers[0], 0f);
+            assertEquals(layout.getLineEndX(), centers[10], 0f);
+            assertEquals(new RateLayout(width, height, 11, 8).getLineY(), layout.getLineY(), 0f);
+            if (previous != null && previous.getWidth() == width){
+                assertSame(previous.getPointCenters(), centers);
+            }
+            previous = layout;
+        }
+        assertSame(previous, RateLayout.obtain(previous.getWidth(), previous.getHeight(), 11, 8));
+    }
+}
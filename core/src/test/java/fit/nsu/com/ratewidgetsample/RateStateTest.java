@@ -0,0 +1,65 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateStateTest {
+
+    @Test
+    public void notRatedByDefault() throws Exception {
+        RateState state = new RateState();
+        assertFalse(state.isRated());
+        assertEquals(RateState.INIT_STATE, state.getCurrentRate());
+    }
+
+    @Test
+    public void selectWhileIdleStartsAnimation() throws Exception {
+        RateState state = new RateState();
+        state.restore(0);
+        assertTrue(state.select(3));
+        assertEquals(3, state.getCurrentRate());
+        assertFalse(state.select(3));
+    }
+
+    @Test
+    public void selectWhileAnimatingRetargets() throws Exception {
+        RateState state = new RateState();
+        state.restore(0);
+        assertTrue(state.select(3));
+        state.onAnimationStart(3);
+
+        assertTrue(state.select(5));
+        state.onAnimationStart(5);
+        assertFalse(state.select(5));
+        assertTrue(state.select(7));
+        state.onAnimationStart(7);
+        assertEquals(7, state.getCurrentRate());
+        assertEquals(7, state.getAnimationTarget());
+
+        assertFalse(state.onAnimationEnd());
+        assertFalse(state.isAnimationRunning());
+    }
+
+    @Test
+    public void selectOfAnimationTargetNeedsNoRetarget() throws Exception {
+        RateState state = new RateState();
+        state.restore(0);
+        state.select(3);
+        state.onAnimationStart(3);
+        assertFalse(state.select(3));
+        // rate changed without retarget is caught up after end
+        state.select(5);
+        assertTrue(state.onAnimationEnd());
+    }
+
+    @Test
+    public void reset() throws Exception {
+        RateState state = new RateState();
+        state.restore(4);
+        state.onAnimationStart(4);
+        state.reset();
+        assertFalse(state.isRated());
+        assertFalse(state.isAnimationRunning());
+    }
+}
@@ -0,0 +1,97 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+public class RateWidgetMetricsTest {
+
+    private final static long FRAME = 16000000;
+
+    @Test
+    public void countsLateAndMissedFrames() throws Exception {
+        RateWidgetMetrics metrics = new RateWidgetMetrics();
+        metrics.setFrameIntervalNanos(FRAME);
+        metrics.onAnimationStart(5 * FRAME, 0);
+        long now = 0;
+        // first tick waits for vsync and is not counted as interval
+        now += 10 * FRAME;
+        metrics.onAnimationFrame(now, 1000);
+        now += FRAME;
+        metrics.onAnimationFrame(now, 1000);
+        // two frames are skipped
+        now += 3 * FRAME;
+        metrics.onAnimationFrame(now, 1000);
+        now += FRAME;
+        metrics.onAnimationFrame(now, 1000);
+        metrics.onAnimationEnd(now);
+
+        assertEquals(1, metrics.getAnimationCount());
+        assertEquals(4, metrics.getFrameCount());
+        assertEquals(1, metrics.getLateFrameCount());
+        assertEquals(2, metrics.getMissedFrameCount());
+        assertEquals(4, metrics.getLastFrameCount());
+        assertEquals(1, metrics.getLastLateFrameCount());
+        assertEquals(2, metrics.getLastMissedFrameCount());
+        assertEquals(5 * FRAME, metrics.getLastPlannedDurationNanos());
+        assertEquals(15 * FRAME, metrics.getLastActualDurationNanos());
+        assertEquals(4, metrics.getDrawTime().getCount());
+        assertEquals(3, metrics.getFrameInterval().getCount());
+        assertEquals(1, metrics.getAnimationOverrun().getCount());
+    }
+
+    @Test
+    public void snapshotIsIndependent() throws Exception {
+        RateWidgetMetrics metrics = new RateWidgetMetrics();
+        metrics.onBitmapAllocated(1000);
+        metrics.onTapSelected(2000);
+        metrics.onTapDrawn(20000);
+        metrics.onFirstFrame(50 * FRAME, 3 * FRAME);
+        RateWidgetMetrics snapshot = metrics.snapshot();
+        metrics.onBitmapAllocated(1000);
+        metrics.reset();
+
+        assertEquals(1, snapshot.getBitmapAllocationCount());
+        assertEquals(1000, snapshot.getBitmapAllocationBytes());
+        assertEquals(1, snapshot.getTapToSelect().getCount());
+        assertEquals(1, snapshot.getTapToDraw().getCount());
+        assertEquals(50 * FRAME, snapshot.getTimeToFirstFrameNanos());
+        assertEquals(3 * FRAME, snapshot.getFirstFrameDrawNanos());
+        assertEquals(0, metrics.getBitmapAllocationCount());
+        assertEquals(0, metrics.getTimeToFirstFrameNanos());
+    }
+
+    @Test
+    public void recordingDoesNotAllocate() throws Exception {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        RateWidgetMetrics metrics = new RateWidgetMetrics();
+        long threadId = Thread.currentThread().getId();
+        runAnimation(metrics);
+        runAnimation(metrics);
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        runAnimation(metrics);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertEquals(0, allocated);
+    }
+
+    private static void runAnimation(RateWidgetMetrics metrics){
+        metrics.onAnimationStart(60 * FRAME, 0);
+        long now = 0;
+        for (int i = 1; i <= 60; ++i){
+            now += (i % 7 == 0 ? 3 : 1) * FRAME;
+            metrics.onAnimationFrame(now, i * 1000);
+        }
+        metrics.onAnimationEnd(now);
+        metrics.onTapSelected(5000);
+    }
+}
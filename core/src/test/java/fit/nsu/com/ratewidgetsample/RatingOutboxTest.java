@@ -0,0 +1,148 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RatingOutboxTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void drainsInBatches() throws Exception {
+        File file = mFolder.newFile();
+        FileRatingSink sink = new FileRatingSink(mFolder.newFile());
+        RatingOutbox outbox = new RatingOutbox(file, 4);
+        for (int i = 0; i < 10; ++i){
+            outbox.append(i, i % 11, 1000L + i);
+        }
+        assertEquals(10, outbox.getPendingCount());
+
+        assertEquals(10, outbox.drain(sink, 3));
+        assertEquals(4, sink.getBatchCount());
+        List<String> lines = sink.readLines();
+        assertEquals(10, lines.size());
+        assertEquals("0,0,1000", lines.get(0));
+        assertEquals("9,9,1009", lines.get(9));
+        assertEquals(0, outbox.getPendingCount());
+        assertEquals(0, outbox.drain(sink, 3));
+        outbox.close();
+        // only header is left after full drain
+        assertEquals(8, file.length());
+    }
+
+    @Test
+    public void crashBetweenTruncateAndHeaderResetLosesNothing() throws Exception {
+        File file = mFolder.newFile();
+        RatingOutbox outbox = new RatingOutbox(file, 1);
+        for (int i = 0; i < 5; ++i){
+            outbox.append(i, i, i);
+        }
+        outbox.close();
+        // full drain has truncated file and crashed before header was reset
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+            raf.setLength(RatingOutbox.HEADER_SIZE);
+            raf.seek(0);
+            raf.writeLong(RatingOutbox.HEADER_SIZE + 5 * RatingOutbox.RECORD_SIZE);
+        }
+
+        FileRatingSink sink = new FileRatingSink(mFolder.newFile());
+        RatingOutbox reopened = new RatingOutbox(file, 1);
+        assertEquals(0, reopened.getPendingCount());
+        reopened.append(7, 3, 100);
+        assertEquals(1, reopened.drain(sink, 10));
+        assertEquals("7,3,100", sink.readLines().get(0));
+        assertEquals(1, sink.readLines().size());
+        reopened.close();
+    }
+
+    @Test
+    public void syncsInGroups() throws Exception {
+        File file = mFolder.newFile();
+        RatingOutbox outbox = new RatingOutbox(file, 4);
+        for (int i = 0; i < 3; ++i){
+            outbox.append(1, i, i);
+        }
+        assertEquals(8, file.length());
+        outbox.append(1, 3, 3);
+        assertEquals(8 + 4 * RatingOutbox.RECORD_SIZE, file.length());
+        outbox.append(1, 4, 4);
+        outbox.flush();
+        assertEquals(8 + 5 * RatingOutbox.RECORD_SIZE, file.length());
+        outbox.close();
+    }
+
+    @Test
+    public void failedBatchIsKept() throws Exception {
+        File file = mFolder.newFile();
+        FileRatingSink sink = new FileRatingSink(mFolder.newFile());
+        RatingOutbox outbox = new RatingOutbox(file, 16);
+        for (int i = 0; i < 10; ++i){
+            outbox.append(7, i, i);
+        }
+        sink.failAfter(2);
+        try {
+            outbox.drain(sink, 4);
+            fail();
+        } catch (IOException e){
+            // expected
+        }
+        assertEquals(2, outbox.getPendingCount());
+        outbox.close();
+
+        // pending records survive reopening
+        RatingOutbox reopened = new RatingOutbox(file, 16);
+        assertEquals(2, reopened.getPendingCount());
+        sink.failAfter(Integer.MAX_VALUE);
+        assertEquals(2, reopened.drain(sink, 4));
+        List<String> lines = sink.readLines();
+        assertEquals(10, lines.size());
+        assertEquals("7,8,8", lines.get(8));
+        reopened.close();
+    }
+
+    @Test
+    public void tornRecordIsIgnored() throws Exception {
+        File file = mFolder.newFile();
+        RatingOutbox outbox = new RatingOutbox(file, 1);
+        outbox.append(1, 2, 3);
+        outbox.append(1, 5, 6);
+        outbox.close();
+
+        // crash in the middle of the third record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() + RatingOutbox.RECORD_SIZE / 2);
+        }
+
+        RatingOutbox reopened = new RatingOutbox(file, 1);
+        assertEquals(2, reopened.getPendingCount());
+        reopened.append(1, 9, 10);
+        FileRatingSink sink = new FileRatingSink(mFolder.newFile());
+        assertEquals(3, reopened.drain(sink, 10));
+        assertEquals("1,9,10", sink.readLines().get(2));
+        reopened.close();
+    }
+
+    @Test
+    public void appendsAfterPartialDrainAreKept() throws Exception {
+        RatingOutbox outbox = new RatingOutbox(mFolder.newFile(), 2);
+        FileRatingSink sink = new FileRatingSink(mFolder.newFile());
+        outbox.append(1, 1, 1);
+        outbox.append(1, 2, 2);
+        outbox.append(1, 3, 3);
+        assertEquals(3, outbox.drain(sink, 2));
+        outbox.append(2, 4, 4);
+        assertEquals(1, outbox.getPendingCount());
+        assertEquals(1, outbox.drain(sink, 2));
+        assertEquals("2,4,4", sink.readLines().get(3));
+        outbox.close();
+    }
+}
@@ -0,0 +1,164 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * Renders scale headless at every rate and at animation frames and compares it with golden images
+ * from resources/golden. Run with -Dgolden.update=&lt;dir&gt; (./gradlew :core:test -PgoldenUpdate)
+ * to write images into that directory instead, then look at what has changed before committing.
+ */
+public class ScaleGoldenTest {
+
+    private final static String UPDATE_PROPERTY = "golden.update";
+    //antialiasing is not exactly the same on every JDK
+    private final static int CHANNEL_TOLERANCE = 8;
+    private final static double PIXEL_TOLERANCE = 0.002;
+
+    private final static int SELECTED = 0xFFFEA002;
+    private final static int SIMPLE = 0xFFD8D8D8;
+    private final static int BACKGROUND = 0xFFFFFFFF;
+    private final static int TEXT = 0x61000000;
+
+    private final static int WIDTH = 1000;
+    private final static int HEIGHT = 300;
+
+    private final RateLayout mLayout = new RateLayout(WIDTH, HEIGHT, 11, 8);
+    private final ScaleRenderer mRenderer = newRenderer(mLayout);
+
+    @Test
+    public void settledRates() throws Exception {
+        checkGolden("rate_none", render(mRenderer, ScaleRenderer.NO_FILL, RateState.INIT_STATE));
+        for (int rate = 0; rate < mLayout.getPointCount(); ++rate){
+            checkGolden("rate_" + rate, render(mRenderer, ScaleRenderer.fillX(mLayout, rate), rate));
+        }
+    }
+
+    @Test
+    public void animationFrames() throws Exception {
+        RateState state = new RateState();
+        state.restore(0);
+        RateAnimationDriver driver = new RateAnimationDriver(state);
+
+        assertTrue(driver.select(10, 0));
+        long leg = driver.getLegDurationNanos();
+        for (int quarter = 1; quarter < 4; ++quarter){
+            driver.onFrame(leg * quarter / 4);
+            checkGolden("anim_0_10_" + quarter, renderAt(driver));
+        }
+
+        // reversal in the middle of the leg goes back to 2 from where the fill is now
+        long start = leg * 3 / 4;
+        driver.select(2, start);
+        long back = driver.getLegDurationNanos();
+        for (int quarter = 1; quarter < 4; ++quarter){
+            driver.onFrame(start + back * quarter / 4);
+            checkGolden("anim_back_2_" + quarter, renderAt(driver));
+        }
+        assertFalse(driver.onFrame(start + back));
+        checkGolden("rate_2", renderAt(driver));
+    }
+
+    @Test
+    public void denseScale() throws Exception {
+        RateLayout layout = new RateLayout(WIDTH, HEIGHT, 1001, 8);
+        ScaleRenderer renderer = newRenderer(layout);
+        checkGolden("dense_none", render(renderer, ScaleRenderer.NO_FILL, RateState.INIT_STATE));
+        checkGolden("dense_500", render(renderer, ScaleRenderer.fillX(layout, 500), 500));
+        checkGolden("dense_1000", render(renderer, ScaleRenderer.fillX(layout, 1000), 1000));
+    }
+
+    @Test
+    public void composedScaleIsDrawnScale() throws Exception {
+        BufferedImage empty = renderBase(ScaleRenderer.NO_FILL);
+        BufferedImage filled = renderBase(mLayout.getLineEndX());
+        Java2DScaleCanvas canvas = new Java2DScaleCanvas(WIDTH, HEIGHT);
+        for (int step = 0; step <= 40; ++step){
+            float position = step / 4f;
+            float fillX = ScaleRenderer.fillXAt(mLayout, position);
+            int selected = step % 4 == 0 ? step / 4 : RateState.INIT_STATE;
+
+            // the same way RateWidget composes its bitmap from BaseScaleCache
+            canvas.clear();
+            canvas.copy(empty, 0, WIDTH);
+            canvas.copy(filled, 0, fillX);
+            mRenderer.drawFillEdge(canvas, fillX);
+            mRenderer.drawOverlay(canvas, selected);
+
+            assertSimilar("position " + position, render(mRenderer, fillX, selected), canvas.getImage());
+        }
+    }
+
+    private static ScaleRenderer newRenderer(RateLayout layout){
+        // simple labels sit on one line with selected ones as RateWidget puts them
+        return new ScaleRenderer(layout, RateLabels.obtain(layout.getPointCount()), SELECTED, SIMPLE, BACKGROUND,
+                TEXT, layout.getSelectedTextY() - 0.35f * (Java2DScaleCanvas.SELECTED_TEXT_SIZE - Java2DScaleCanvas.SIMPLE_TEXT_SIZE));
+    }
+
+    private BufferedImage renderAt(RateAnimationDriver driver){
+        return render(mRenderer, ScaleRenderer.fillXAt(mLayout, driver.getPosition()), driver.getSelected());
+    }
+
+    private static BufferedImage render(ScaleRenderer renderer, float fillX, int selected){
+        RateLayout layout = renderer.getLayout();
+        Java2DScaleCanvas canvas = new Java2DScaleCanvas(layout.getWidth(), layout.getHeight());
+        renderer.draw(canvas, fillX, selected);
+        return canvas.getImage();
+    }
+
+    private BufferedImage renderBase(float fillX){
+        Java2DScaleCanvas canvas = new Java2DScaleCanvas(WIDTH, HEIGHT);
+        mRenderer.drawBase(canvas, fillX, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
+        return canvas.getImage();
+    }
+
+    private static void checkGolden(String name, BufferedImage image) throws IOException {
+        String updateDir = System.getProperty(UPDATE_PROPERTY);
+        if (updateDir != null){
+            File dir = new File(updateDir);
+            assertTrue(dir.isDirectory() || dir.mkdirs());
+            ImageIO.write(image, "png", new File(dir, name + ".png"));
+            return;
+        }
+        BufferedImage golden;
+        try (InputStream in = ScaleGoldenTest.class.getResourceAsStream("/golden/" + name + ".png")){
+            assertNotNull("No golden image " + name + ", run with -D" + UPDATE_PROPERTY + "=<dir>", in);
+            golden = ImageIO.read(in);
+        }
+        assertSimilar(name, golden, image);
+    }
+
+    private static void assertSimilar(String name, BufferedImage expected, BufferedImage actual){
+        assertEquals(name + " width", expected.getWidth(), actual.getWidth());
+        assertEquals(name + " height", expected.getHeight(), actual.getHeight());
+        int width = expected.getWidth();
+        int height = expected.getHeight();
+        int differentPixels = 0;
+        for (int y = 0; y < height; ++y){
+            for (int x = 0; x < width; ++x){
+                if (channelDistance(expected.getRGB(x, y), actual.getRGB(x, y)) > CHANNEL_TOLERANCE){
+                    ++differentPixels;
+                }
+            }
+        }
+        int allowed = (int) (PIXEL_TOLERANCE * width * height);
+        assertTrue(name + ": " + differentPixels + " pixels differ, " + allowed + " allowed",
+                differentPixels <= allowed);
+    }
+
+    private static int channelDistance(int a, int b){
+        int max = 0;
+        for (int shift = 0; shift < 32; shift += 8){
+            max = Math.max(max, Math.abs(((a >>> shift) & 0xFF) - ((b >>> shift) & 0xFF)));
+        }
+        return max;
+    }
+}
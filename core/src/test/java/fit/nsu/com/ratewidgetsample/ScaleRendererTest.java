@@ -0,0 +1,179 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScaleRendererTest {
+
+    private final static int SELECTED = 0xFF0000FF;
+    private final static int SIMPLE = 0xFFD8D8D8;
+    private final static int BACKGROUND = 0xFFFFFFFF;
+    private final static int TEXT = 0x61000000;
+
+    private final RateLayout mLayout = new RateLayout(1000, 300, 11, 8);
+    private final ScaleRenderer mRenderer = new ScaleRenderer(mLayout, RateLabels.obtain(11),
+            SELECTED, SIMPLE, BACKGROUND, TEXT, 200f);
+
+    @Test
+    public void notRatedScale() throws Exception {
+        RecordingCanvas canvas = new RecordingCanvas();
+        mRenderer.draw(canvas, ScaleRenderer.NO_FILL, RateState.INIT_STATE);
+
+        assertEquals(1, canvas.count("line"));
+        assertEquals(11, canvas.count("circle", SIMPLE));
+        assertEquals(11, canvas.count("circle", BACKGROUND));
+        assertEquals(0, canvas.count("circle", SELECTED));
+        assertTrue(canvas.ops.contains("label 1 simple"));
+        assertTrue(canvas.ops.contains("label 11 simple"));
+        assertEquals(2, canvas.count("label"));
+    }
+
+    @Test
+    public void ratedScaleFillsPointsUpToSelected() throws Exception {
+        RecordingCanvas canvas = new RecordingCanvas();
+        mRenderer.draw(canvas, ScaleRenderer.fillX(mLayout, 4), 4);
+
+        assertEquals(2, canvas.count("line"));
+        assertEquals(1, canvas.count("line", SELECTED));
+        // five filled points and selected circle
+        assertEquals(6, canvas.count("circle", SELECTED));
+        assertEquals(6, canvas.count("circle", SIMPLE));
+        assertTrue(canvas.ops.contains("label 5 selected"));
+        assertEquals(3, canvas.count("label"));
+    }
+
+    @Test
+    public void selectedEdgePointReplacesSimpleLabel() throws Exception {
+        RecordingCanvas canvas = new RecordingCanvas();
+        mRenderer.draw(canvas, ScaleRenderer.fillX(mLayout, 10), 10);
+        assertFalse(canvas.ops.contains("label 11 simple"));
+        assertTrue(canvas.ops.contains("label 11 selected"));
+        assertEquals(2, canvas.count("label"));
+    }
+
+    @Test
+    public void animationFrameHasNoSelection() throws Exception {
+        RecordingCanvas canvas = new RecordingCanvas();
+        float fillX = (mLayout.getPointCenter(2) + mLayout.getPointCenter(3)) / 2;
+        mRenderer.draw(canvas, fillX, RateState.INIT_STATE);
+        assertEquals(3, canvas.count("circle", SELECTED));
+        assertEquals(2, canvas.count("label"));
+    }
+
+    @Test
+    public void labelsAreBuiltOnce() throws Exception {
+        String[] labels = RateLabels.obtain(11);
+        assertEquals("1", labels[0]);
+        assertEquals("11", labels[10]);
+        assertSame(labels, RateLabels.obtain(5));
+    }
+
+    @Test
+    public void fillPositionMatchesPointCenters() throws Exception {
+        for (int i = 0; i < mLayout.getPointCount(); ++i){
+            assertEquals(ScaleRenderer.fillX(mLayout, i), ScaleRenderer.fillXAt(mLayout, i), 0f);
+        }
+        float half = ScaleRenderer.fillXAt(mLayout, 2.5f);
+        assertEquals((mLayout.getPointCenter(2) + mLayout.getPointCenter(3)) / 2, half, 1e-3f);
+        assertEquals(ScaleRenderer.NO_FILL, ScaleRenderer.fillXAt(mLayout, RateState.INIT_STATE), 0f);
+    }
+
+    @Test
+    public void denseScaleDrawsTicksWithStride() throws Exception {
+        RateLayout layout = new RateLayout(1080, 300, 1001, 8);
+        ScaleRenderer renderer = new ScaleRenderer(layout, RateLabels.obtain(1001),
+                SELECTED, SIMPLE, BACKGROUND, TEXT, 200f);
+        int stride = layout.getTickStride();
+        RecordingCanvas canvas = new RecordingCanvas();
+        renderer.draw(canvas, ScaleRenderer.fillX(layout, 500), 500);
+
+        // ticks before the last point, the last point and the selected one
+        int ticks = (1000 - stride) / stride + 1;
+        assertEquals(ticks + 2, canvas.circleXs.size());
+        assertEquals(2, canvas.count("line"));
+        assertEquals(layout.getLineEndX(), canvas.circleXs.get(canvas.circleXs.size() - 2), 0f);
+        assertEquals(layout.getPointCenter(500), canvas.circleXs.get(canvas.circleXs.size() - 1), 0f);
+    }
+
+    @Test
+    public void clippedDrawSkipsPointsOutsideClip() throws Exception {
+        RecordingCanvas full = new RecordingCanvas();
+        mRenderer.draw(full, ScaleRenderer.NO_FILL, RateState.INIT_STATE);
+        float left = mLayout.getPointCenter(4) - 1;
+        float right = mLayout.getPointCenter(6) + 1;
+
+        RecordingCanvas clipped = new RecordingCanvas();
+        mRenderer.draw(clipped, ScaleRenderer.NO_FILL, RateState.INIT_STATE, left, right);
+        assertTrue(clipped.count("circle") < full.count("circle"));
+        float reach = mLayout.getOuterPointRadius() + mLayout.getStep();
+        for (float x : clipped.circleXs){
+            assertTrue(x >= left - reach && x <= right + reach);
+        }
+        for (float x : full.circleXs){
+            if (x >= left - mLayout.getOuterPointRadius() && x <= right + mLayout.getOuterPointRadius()){
+                assertTrue(clipped.circleXs.contains(x));
+            }
+        }
+    }
+
+    @Test
+    public void fillEdgeRedrawsOnlyCrossedPoints() throws Exception {
+        RecordingCanvas canvas = new RecordingCanvas();
+        mRenderer.drawFillEdge(canvas, mLayout.getPointCenter(3));
+        assertEquals(1, canvas.count("circle", SELECTED));
+        assertEquals(1, canvas.ops.size());
+
+        canvas = new RecordingCanvas();
+        mRenderer.drawFillEdge(canvas, mLayout.getPointCenter(3) - mLayout.getOuterPointRadius() / 2);
+        assertEquals(1, canvas.count("circle", SIMPLE));
+        assertEquals(1, canvas.count("circle", BACKGROUND));
+        assertEquals(2, canvas.ops.size());
+
+        canvas = new RecordingCanvas();
+        mRenderer.drawFillEdge(canvas, ScaleRenderer.NO_FILL);
+        assertTrue(canvas.ops.isEmpty());
+    }
+
+    static class RecordingCanvas implements ScaleCanvas {
+        final List<String> ops = new ArrayList<>();
+        final List<Float> circleXs = new ArrayList<>();
+
+        @Override
+        public void drawLine(float startX, float stopX, float y, float strokeWidth, int color) {
+            ops.add("line " + Integer.toHexString(color));
+        }
+
+        @Override
+        public void drawCircle(float centerX, float centerY, float radius, int color) {
+            ops.add("circle " + Integer.toHexString(color));
+            if (color != BACKGROUND){
+                circleXs.add(centerX);
+            }
+        }
+
+        @Override
+        public void drawLabel(int index, String text, float centerX, float baselineY, boolean selected, int color) {
+            // labels come from RateLabels, so index always names the same text
+            assertEquals(Integer.toString(index + 1), text);
+            ops.add("label " + text + (selected ? " selected" : " simple"));
+        }
+
+        int count(String op) {
+            int count = 0;
+            for (String o : ops) {
+                if (o.startsWith(op)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        int count(String op, int color) {
+            return count(op + " " + Integer.toHexString(color));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package fit.nsu.com.ratewidgetsample;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SurveySnapshotStoreTest {
+
+    private final static int CAPACITY = 16;
+    private final static int SLOT_SIZE = SurveySnapshotStore.SLOT_HEADER_SIZE + CAPACITY * SurveySnapshotStore.RATE_SIZE;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void emptyStoreHasNoSnapshot() throws Exception {
+        assertNull(new SurveySnapshotStore(new File(mFolder.getRoot(), "missing"), CAPACITY).read());
+        assertNull(new SurveySnapshotStore(mFolder.newFile(), CAPACITY).read());
+    }
+
+    @Test
+    public void latestSnapshotIsRead() throws Exception {
+        File file = mFolder.newFile();
+        SurveySnapshotStore store = new SurveySnapshotStore(file, CAPACITY);
+        store.write(new int[]{1, 2, 3}, 3);
+        store.write(new int[]{4, -1, 6, 7}, 4);
+        assertArrayEquals(new int[]{4, -1, 6, 7}, store.read());
+        store.write(new int[]{8}, 1);
+        store.close();
+        // slots are written in turn, file never grows past two of them
+        assertTrue(file.length() <= 2 * SLOT_SIZE);
+
+        SurveySnapshotStore reopened = new SurveySnapshotStore(file, CAPACITY);
+        assertArrayEquals(new int[]{8}, reopened.read());
+        // reopened store goes on with sequence of file
+        reopened.write(new int[]{9, 9}, 2);
+        reopened.close();
+        assertArrayEquals(new int[]{9, 9}, new SurveySnapshotStore(file, CAPACITY).read());
+    }
+
+    @Test
+    public void tornWriteKeepsPreviousSnapshot() throws Exception {
+        File file = mFolder.newFile();
+        SurveySnapshotStore store = new SurveySnapshotStore(file, CAPACITY);
+        store.write(new int[]{1, 1, 1}, 3);
+        store.write(new int[]{2, 2, 2, 2}, 4);
+        store.close();
+        byte[] before = Files.readAllBytes(file.toPath());
+
+        // the next snapshot goes to slot 1, its image is taken from a copy of file
+        File copy = mFolder.newFile();
+        Files.write(copy.toPath(), before);
+        SurveySnapshotStore next = new SurveySnapshotStore(copy, CAPACITY);
+        next.write(new int[]{3, 3, 3, 3, 3}, 5);
+        next.close();
+        byte[] after = Files.readAllBytes(copy.toPath());
+
+        int slotEnd = SLOT_SIZE + SurveySnapshotStore.SLOT_HEADER_SIZE + 5 * SurveySnapshotStore.RATE_SIZE;
+        for (int written = 0; written < slotEnd - SLOT_SIZE; written++){
+            // crash after some bytes of the slot have reached disk, file may be already extended
+            byte[] torn = Arrays.copyOf(before, after.length);
+            System.arraycopy(after, SLOT_SIZE, torn, SLOT_SIZE, written);
+            Files.write(file.toPath(), torn);
+            int[] rates = new SurveySnapshotStore(file, CAPACITY).read();
+            assertArrayEquals("written " + written, new int[]{2, 2, 2, 2}, rates);
+        }
+        Files.write(file.toPath(), after);
+        assertArrayEquals(new int[]{3, 3, 3, 3, 3}, new SurveySnapshotStore(file, CAPACITY).read());
+    }
+
+    @Test
+    public void corruptedSlotIsSkipped() throws Exception {
+        File file = mFolder.newFile();
+        SurveySnapshotStore store = new SurveySnapshotStore(file, CAPACITY);
+        store.write(new int[]{1, 2}, 2);
+        store.write(new int[]{3, 4}, 2);
+        store.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+            // flip a bit of the latest rates, it is in slot 0
+            long position = SurveySnapshotStore.SLOT_HEADER_SIZE + 3;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 1);
+        }
+        assertArrayEquals(new int[]{1, 2}, new SurveySnapshotStore(file, CAPACITY).read());
+
+        // file cut in the middle of slot 1 has no complete snapshot left
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+            raf.setLength(SLOT_SIZE + 10);
+        }
+        assertNull(new SurveySnapshotStore(file, CAPACITY).read());
+    }
+
+    @Test
+    public void submitsAreCoalesced() throws Exception {
+        File file = mFolder.newFile();
+        SurveySnapshotStore store = new SurveySnapshotStore(file, CAPACITY);
+        List<Runnable> tasks = new ArrayList<>();
+        int[] rates = new int[5];
+        Arrays.fill(rates, -1);
+        for (int i = 0; i < 5; i++){
+            rates[i] = i;
+            store.submit(rates, rates.length, tasks::add);
+        }
+        assertEquals(1, tasks.size());
+        assertEquals(0, store.getWrittenCount());
+        tasks.get(0).run();
+        assertEquals(5, store.getSubmittedCount());
+        assertEquals(1, store.getWrittenCount());
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, store.read());
+
+        // the next submit schedules a write again
+        rates[0] = 7;
+        store.submit(rates, rates.length, tasks::add);
+        assertEquals(2, tasks.size());
+        store.close();
+        assertArrayEquals(new int[]{7, 1, 2, 3, 4}, new SurveySnapshotStore(file, CAPACITY).read());
+    }
+
+    @Test
+    public void failedWriteIsRetried() throws Exception {
+        File dir = new File(mFolder.getRoot(), "drafts");
+        SurveySnapshotStore store = new SurveySnapshotStore(new File(dir, "survey"), CAPACITY);
+        store.submit(new int[]{5, 6}, 2, Runnable::run);
+        assertNotNull(store.getWriteError());
+
+        assertTrue(dir.mkdir());
+        store.submit(new int[]{5, 6, 7}, 3, Runnable::run);
+        assertNull(store.getWriteError());
+        assertArrayEquals(new int[]{5, 6, 7}, store.read());
+        store.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void surveyLargerThanCapacityIsRejected() throws Exception {
+        new SurveySnapshotStore(mFolder.newFile(), 2).submit(new int[3], 3, Runnable::run);
+    }
+
+    @Test
+    public void thousandQuestionsAreRestored() throws Exception {
+        File file = mFolder.newFile();
+        int count = 1000;
+        SurveySnapshotStore store = new SurveySnapshotStore(file, count);
+        int[] rates = new int[count];
+        for (int i = 0; i < count; i++){
+            rates[i] = i % 11;
+        }
+        store.write(rates, count);
+        store.close();
+
+        assertArrayEquals(rates, new SurveySnapshotStore(file, count).read());
+    }
+}